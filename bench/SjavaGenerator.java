@@ -0,0 +1,141 @@
+package bench;
+
+/**
+ * Generates large sjava sources for the benchmarks (valid, apart from the last line of PATHOLOGICAL).
+ */
+public class SjavaGenerator {
+    /** Many global declarations of every type, and one method that reads them. */
+    public static final String GLOBALS = "globals";
+    /** Methods whose bodies are deeply nested if/while blocks. */
+    public static final String NESTING = "nesting";
+    /** Many methods, each calling the ones declared before it. */
+    public static final String CALLS = "calls";
+    /**
+     * Global declarations (half of the lines), then methods that read them, with nested if/while blocks and a call
+     * of the method before - the shape of an ordinary large file.
+     */
+    public static final String MIXED = "mixed";
+    /**
+     * A few lines as long as the size: a long name, long runs of whitespace, a long condition and a string of
+     * quotes, then a long line that assigns a string to an int - lines that backtracking patterns are slow on.
+     */
+    public static final String PATHOLOGICAL = "pathological";
+
+    private static final int NESTING_DEPTH = 20;
+    private static final int CALLS_PER_METHOD = 5;
+    private static final int LINES_PER_MIXED_METHOD = 11;
+    private static final String[] GLOBAL_DECLARATIONS = {
+            "int i%d = %d;", "double d%d = %d.5;", "boolean b%d = true;", "char c%d = 'c';",
+            "String s%d = \"s%d\";", "final int f%d = %d;"};
+
+    /**
+     * Generates a source of the given shape.
+     *
+     * @param shape GLOBALS, NESTING, CALLS, MIXED or PATHOLOGICAL.
+     * @param size  roughly the number of lines of the source (the length of the lines for PATHOLOGICAL).
+     * @return the source code.
+     */
+    public static String generate(String shape, int size) {
+        switch (shape) {
+            case GLOBALS:
+                return globals(size);
+            case NESTING:
+                return nesting(size);
+            case CALLS:
+                return calls(size);
+            case MIXED:
+                return mixed(size);
+            case PATHOLOGICAL:
+                return pathological(size);
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    private static String globals(int size) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            String declaration = GLOBAL_DECLARATIONS[i % GLOBAL_DECLARATIONS.length];
+            source.append(String.format(declaration, i, i)).append('\n');
+        }
+        source.append("void readGlobals() {\n");
+        for (int i = 0; i < size; i += GLOBAL_DECLARATIONS.length) {
+            source.append("    int local").append(i).append(" = i").append(i).append(";\n");
+        }
+        return source.append("    return;\n}\n").toString();
+    }
+
+    private static String nesting(int size) {
+        StringBuilder source = new StringBuilder("boolean flag = true;\n");
+        int linesPerMethod = 4 * NESTING_DEPTH + 4;
+        for (int method = 0; method <= size / linesPerMethod; method++) {
+            source.append("void nested").append(method).append("(int a, double b) {\n");
+            source.append("    int x = a;\n");
+            for (int depth = 0; depth < NESTING_DEPTH; depth++) {
+                source.append(depth % 2 == 0 ? "    if (flag || x) {\n" : "    while (b && true) {\n");
+                source.append("    int v").append(depth).append(" = x;\n");
+            }
+            for (int depth = 0; depth < NESTING_DEPTH; depth++) {
+                source.append("    double y").append(depth).append(" = b;\n    }\n");
+            }
+            source.append("    return;\n}\n");
+        }
+        return source.toString();
+    }
+
+    private static String calls(int size) {
+        StringBuilder source = new StringBuilder("int counter = 0;\n");
+        int linesPerMethod = CALLS_PER_METHOD + 5;
+        for (int method = 0; method <= size / linesPerMethod; method++) {
+            source.append("void m").append(method).append("(int a, boolean c) {\n");
+            source.append("    int x = a;\n");
+            for (int call = 1; call <= CALLS_PER_METHOD && call <= method; call++) {
+                source.append("    m").append(method - call).append("(x, c);\n");
+            }
+            source.append("    if (c) {\n        x = counter;\n    }\n");
+            source.append("    return;\n}\n");
+        }
+        return source.toString();
+    }
+
+    private static String mixed(int size) {
+        StringBuilder source = new StringBuilder();
+        int globals = Math.max(size / 2, 1);
+        for (int i = 0; i < globals; i++) {
+            String declaration = GLOBAL_DECLARATIONS[i % GLOBAL_DECLARATIONS.length];
+            source.append(String.format(declaration, i, i)).append('\n');
+        }
+        for (int method = 0; method <= size / 2 / LINES_PER_MIXED_METHOD; method++) {
+            source.append("void f").append(method).append("(int a, boolean c) {\n");
+            source.append("    int x = i").append(method % globals / GLOBAL_DECLARATIONS.length
+                    * GLOBAL_DECLARATIONS.length).append(";\n");
+            source.append("    if (c || true) {\n        while (c && true) {\n            x = a;\n        }\n    }\n");
+            if (method > 0) {
+                source.append("    f").append(method - 1).append("(x, c);\n");
+            }
+            source.append("    return;\n}\n");
+        }
+        return source.toString();
+    }
+
+    private static String pathological(int size) {
+        String name = "a" + "1".repeat(size);
+        String spaces = " ".repeat(size);
+        StringBuilder condition = new StringBuilder("c");
+        while (condition.length() < size) {
+            condition.append(" || c");
+        }
+        StringBuilder source = new StringBuilder();
+        source.append("int ").append(name).append(" = 1;\n");
+        source.append("String text = \"a").append(spaces).append("b\";\n");
+        source.append("String quotes = \"").append("\\\"".repeat(size / 2)).append("\";\n");
+        source.append("void g(String s, boolean c) {\n");
+        source.append("    int x =").append(spaces).append(name).append(";\n");
+        source.append("    if (").append(condition).append(") {\n        x = 2;\n    }\n");
+        source.append("    return;\n}\n");
+        source.append("void h(boolean c) {\n");
+        source.append("    g(\"a").append(spaces).append("b\"").append(spaces).append(", c);\n");
+        source.append("    ").append(name).append(" = \"a").append(spaces).append("b\";\n");
+        return source.append("    return;\n}\n").toString();
+    }
+}
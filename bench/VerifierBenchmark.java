@@ -0,0 +1,165 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import oop.ex6.main.Verifier;
+import parsing.MainParser;
+import parsing.ParseException;
+import parsing.SyntaxException;
+import parsing.SyntaxParser;
+import scope.ScopeException;
+import scope.VariableException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks every phase of the verifier separately: the syntax check, building the scope tree and
+ * parsing the scopes, and the whole verification of a file. The input is either all the sample files in the tests directory (set with
+ * -Dsjava.tests=dir, "tests" by default) or a generated source of the given shape and size.
+ * Run with "-prof gc" to report the allocation rate as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerifierBenchmark {
+    private static final String SAMPLES = "samples";
+    private static final String TESTS_DIRECTORY = System.getProperty("sjava.tests", "tests");
+    private static final String SJAVA_SUFFIX = ".sjava";
+
+    @Param({SAMPLES, SjavaGenerator.GLOBALS, SjavaGenerator.NESTING, SjavaGenerator.CALLS, SjavaGenerator.MIXED,
+            SjavaGenerator.PATHOLOGICAL})
+    public String input;
+
+    @Param({"10000"})
+    public int size;
+
+    private final Verifier verifier = new Verifier();
+    private List<String> sources;
+    private final List<ArrayList<String>> cleanSources = new ArrayList<>();
+
+    /**
+     * Loads or generates the sources, and runs the syntax check once to get the input of the scope phase.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (input.equals(SAMPLES)) {
+            try (Stream<Path> files = Files.list(Paths.get(TESTS_DIRECTORY))) {
+                List<Path> samples = files.filter(path -> path.toString().endsWith(SJAVA_SUFFIX)).sorted()
+                        .collect(Collectors.toList());
+                sources = new ArrayList<>();
+                for (Path sample : samples) {
+                    sources.add(new String(Files.readAllBytes(sample)));
+                }
+            }
+        } else {
+            sources = List.of(SjavaGenerator.generate(input, size));
+        }
+        for (String source : sources) {
+            try {
+                cleanSources.add(SyntaxParser.validateSyntax(new BufferedReader(new StringReader(source))));
+            } catch (SyntaxException e) {
+                // invalid samples only take part in the syntax benchmark
+            }
+        }
+    }
+
+    /**
+     * The syntax check (cleaning and bracket rules) of every source.
+     */
+    @Benchmark
+    public void validateSyntax(Blackhole blackhole) throws IOException {
+        for (String source : sources) {
+            try {
+                blackhole.consume(SyntaxParser.validateSyntax(new BufferedReader(new StringReader(source))));
+            } catch (SyntaxException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    /**
+     * Building the scope tree of every source with valid syntax.
+     */
+    @Benchmark
+    public void buildScopes(Blackhole blackhole) {
+        for (ArrayList<String> lines : cleanSources) {
+            try {
+                blackhole.consume(new scope.Scope(lines, null));
+            } catch (ScopeException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    /**
+     * Parsing the scope trees (parsing changes the scopes, so they are built again before every call).
+     */
+    @Benchmark
+    public void mainParse(ScopeTrees trees, Blackhole blackhole) {
+        for (scope.Scope globalScope : trees.globalScopes) {
+            try {
+                MainParser.mainParse(globalScope);
+                blackhole.consume(globalScope);
+            } catch (VariableException | ScopeException | ParseException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    /**
+     * The whole verification of every source, as Verifier gives it (reading, all the phases and the result).
+     */
+    @Benchmark
+    public void verifyFile(Blackhole blackhole) {
+        for (String source : sources) {
+            blackhole.consume(verifier.verify(source));
+        }
+    }
+
+    /**
+     * Fresh scope trees for a single call of the parse benchmark.
+     */
+    @State(Scope.Thread)
+    public static class ScopeTrees {
+        private final List<scope.Scope> globalScopes = new ArrayList<>();
+
+        /**
+         * Builds the scope trees of all the sources that have valid scopes.
+         */
+        @Setup(Level.Invocation)
+        public void build(VerifierBenchmark benchmark) {
+            globalScopes.clear();
+            for (ArrayList<String> lines : benchmark.cleanSources) {
+                try {
+                    globalScopes.add(new scope.Scope(lines, null));
+                } catch (ScopeException e) {
+                    // such a source takes part in the scope benchmark only
+                }
+            }
+        }
+    }
+}
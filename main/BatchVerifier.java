@@ -0,0 +1,422 @@
+package oop.ex6.main;
+
+import parsing.SyntaxParser;
+import scope.Diagnostics;
+import scope.Stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Verifies many sjava files in one run, as a pipeline: a few reader threads read the files ahead into a bounded
+ * queue, and a thread per CPU verifies them, so waiting for a slow disk doesn't leave the CPUs idle (a large file is
+ * mapped, and loaded by its reader). The files read ahead and not verified yet take at most PREFETCH_BYTES, so a
+ * reader waits when the verifiers fall behind.
+ * Inputs may be files, directories (searched recursively for .sjava files), zip or jar archives (their .sjava
+ * entries are read from the archive, without extracting it, and named "archive!/entry") or @argfiles
+ * (one input per line). One line "path code" is printed per file, in input order.
+ * With --stats the stats of all the files are summed and printed on stderr at the end.
+ */
+public class BatchVerifier {
+    private static final String ARG_FILE_PREFIX = "@";
+    private static final String SJAVA_SUFFIX = ".sjava";
+    private static final String[] ARCHIVE_SUFFIXES = {".zip", ".jar"};
+    private static final String ARCHIVE_ROOT = "/";
+    private static final String ENTRY_SEPARATOR = "!";
+    private static final String SEPARATOR = " ";
+    private static final int READERS = 4;
+    private static final int PREFETCH_BYTES = 64 << 20;
+    private static final int PREFETCH_FILES_PER_VERIFIER = 4;
+    private static final long VERIFIER_STACK_SIZE = 64L << 20; // verifying recurses into nested blocks
+    private static final String VERIFIER_THREAD = "sjavac-verifier-";
+    private static final String INTERRUPTED = "Interrupted before the file was verified";
+
+    /**
+     * Checks if the given arguments ask for batch mode.
+     *
+     * @param inputs inputs given on the command line.
+     * @return true if there is more than one input, or the input is a directory, an archive or an @argfile.
+     */
+    static boolean isBatch(List<String> inputs) {
+        return inputs.size() > 1 || (inputs.size() == 1 && (inputs.get(0).startsWith(ARG_FILE_PREFIX) ||
+                Files.isDirectory(Paths.get(inputs.get(0))) || isArchive(inputs.get(0))));
+    }
+
+    /**
+     * Checks if an input is a zip or jar archive.
+     *
+     * @param input an input given on the command line.
+     * @return true if it is an archive file.
+     */
+    private static boolean isArchive(String input) {
+        String name = input.toLowerCase(Locale.ROOT);
+        for (String suffix : ARCHIVE_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return Files.isRegularFile(Paths.get(input));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verifies all inputs and prints one result line per file.
+     *
+     * @param options command line options.
+     */
+    static void run(Options options) {
+        List<FileSystem> archives = new ArrayList<>();
+        try {
+            run(options, archives);
+        } finally {
+            for (FileSystem archive : archives) {
+                try {
+                    archive.close();
+                } catch (IOException e) { // only read, nothing is lost
+                    System.err.println(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies all inputs and prints one result line per file.
+     *
+     * @param options  command line options.
+     * @param archives the archives opened to verify their entries, closed by the caller.
+     */
+    private static void run(Options options, List<FileSystem> archives) {
+        List<Input> files;
+        try {
+            files = expand(options.getInputs(), archives);
+        } catch (IOException e) {
+            System.out.println(Sjavac.EXCEPTION);
+            System.err.println(e.getMessage());
+            return;
+        }
+        ResultCache cache = options.openCache();
+        Sjavac.Result[] results = verifyAll(files, options.getMaxErrors(), cache, options.isParallel());
+        Stats total = Sjavac.newStats();
+        for (int i = 0; i < results.length; i++) {
+            String name = files.get(i).name;
+            total.add(results[i].getStats());
+            System.out.println(name + SEPARATOR + results[i].getCode());
+            if (options.isDiagnosticsMode() && !results[i].getDiagnostics().isEmpty()) {
+                for (Diagnostics.Diagnostic diagnostic : results[i].getDiagnostics()) {
+                    System.err.println(name + ": " + diagnostic);
+                }
+            } else if (results[i].getMessage() != null) {
+                System.err.println(name + ": " + results[i].getMessage());
+            }
+        }
+        if (options.isStats()) {
+            System.err.println(total.toJson());
+        }
+        if (cache != null) {
+            cache.evict();
+        }
+    }
+
+    /**
+     * Verifies the given files in parallel.
+     *
+     * @param files     the files to verify.
+     * @param maxErrors maximal number of errors to collect per file.
+     * @param cache     the result cache, or null to verify every file.
+     * @param parallel  true to verify the method bodies of each file in parallel too, in a pool of the batch's size.
+     * @return results, in the same order as the files.
+     */
+    static Sjavac.Result[] verifyAll(List<Input> files, int maxErrors, ResultCache cache, boolean parallel) {
+        return new Pipeline(files, maxErrors, cache, parallel, Runtime.getRuntime().availableProcessors()).run();
+    }
+
+    /**
+     * Expands directories, archives and @argfiles into a list of files, keeping the input order.
+     *
+     * @param inputs   inputs given on the command line.
+     * @param archives the opened archives, to add the archives of the inputs to.
+     * @return the files to verify.
+     */
+    private static List<Input> expand(List<String> inputs, List<FileSystem> archives) throws IOException {
+        List<Input> files = new ArrayList<>();
+        for (String arg : inputs) {
+            if (arg.startsWith(ARG_FILE_PREFIX)) {
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)))) {
+                    if (!line.trim().isEmpty()) {
+                        files.addAll(expand(Collections.singletonList(line.trim()), archives));
+                    }
+                }
+            } else if (Files.isDirectory(Paths.get(arg))) {
+                try (Stream<Path> walk = Files.walk(Paths.get(arg))) {
+                    walk.filter(path -> path.toString().endsWith(SJAVA_SUFFIX)).filter(Files::isRegularFile)
+                            .map(Path::toString).sorted().forEachOrdered(file -> files.add(new Input(file, null)));
+                }
+            } else if (isArchive(arg)) {
+                FileSystem archive = FileSystems.newFileSystem(Paths.get(arg));
+                archives.add(archive);
+                try (Stream<Path> walk = Files.find(archive.getPath(ARCHIVE_ROOT), Integer.MAX_VALUE,
+                        (entry, attributes) -> attributes.isRegularFile() && entry.toString().endsWith(SJAVA_SUFFIX))) {
+                    walk.sorted(Comparator.comparing(Path::toString))
+                            .forEachOrdered(entry -> files.add(new Input(arg + ENTRY_SEPARATOR + entry, entry)));
+                }
+            } else {
+                files.add(new Input(arg, null));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads the files ahead on the reader threads and verifies them on the verifier threads.
+     * Every file is put in the queue once, read or not (a file that can't be read ahead is verified from its
+     * path, as without the pipeline), and every verifier takes files until all of them were taken.
+     */
+    private static class Pipeline {
+        private final List<Input> files;
+        private final Sjavac.Result[] results;
+        private final int maxErrors;
+        private final ResultCache cache;
+        private final ForkJoinPool methodPool;
+        private final int verifiers;
+        private final boolean readAhead;
+        private final BlockingQueue<ReadFile> queue;
+        private final Semaphore prefetchBytes = new Semaphore(PREFETCH_BYTES);
+        private final AtomicInteger nextRead = new AtomicInteger();
+        private final AtomicInteger nextVerify = new AtomicInteger();
+
+        Pipeline(List<Input> files, int maxErrors, ResultCache cache, boolean parallel, int verifiers) {
+            this.files = files;
+            this.results = new Sjavac.Result[files.size()];
+            this.maxErrors = maxErrors;
+            this.cache = cache;
+            // a verifier waits while the methods of its file are verified, so the two pools keep as many threads
+            // busy as there are verifiers
+            this.methodPool = parallel ? new ForkJoinPool(verifiers) : null;
+            this.verifiers = verifiers;
+            // without the cache a file in another charset is decoded as it is read, the same as a single file
+            this.readAhead = cache != null || SyntaxParser.isByteScannable(Charset.defaultCharset());
+            this.queue = new ArrayBlockingQueue<>(verifiers * PREFETCH_FILES_PER_VERIFIER);
+        }
+
+        /**
+         * Runs the pipeline until all the files are verified.
+         *
+         * @return results, in the same order as the files.
+         */
+        Sjavac.Result[] run() {
+            ExecutorService readerPool = Executors.newFixedThreadPool(READERS);
+            AtomicInteger threads = new AtomicInteger();
+            ExecutorService verifierPool = Executors.newFixedThreadPool(verifiers, task -> new Thread(null, task,
+                    VERIFIER_THREAD + threads.incrementAndGet(), VERIFIER_STACK_SIZE));
+            try {
+                for (int i = 0; i < READERS; i++) {
+                    readerPool.execute(this::readFiles);
+                }
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (int i = 0; i < verifiers; i++) {
+                    tasks.add(this::verifyFiles);
+                }
+                for (Future<Void> task : verifierPool.invokeAll(tasks)) {
+                    task.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                verifierPool.shutdownNow();
+                awaitVerifiers(verifierPool);
+                for (int i = 0; i < results.length; i++) { // the files no verifier got to
+                    if (results[i] == null) {
+                        results[i] = new Sjavac.Result(Sjavac.EXCEPTION, INTERRUPTED, Collections.emptyList());
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                readerPool.shutdownNow(); // wakes readers waiting for room, if the verifiers stopped
+                verifierPool.shutdownNow();
+                if (methodPool != null) {
+                    methodPool.shutdownNow();
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Waits for the verifiers to stop after they were interrupted, so none of them sets a result while the
+         * results are filled in. The interrupt of the current thread is kept.
+         *
+         * @param verifierPool the pool of the verifiers, shut down.
+         */
+        private static void awaitVerifiers(ExecutorService verifierPool) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (true) {
+                    try {
+                        verifierPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                        return;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Reads files ahead, in their order, until every file was taken by a reader.
+         */
+        private void readFiles() {
+            try {
+                int index;
+                while ((index = nextRead.getAndIncrement()) < files.size()) {
+                    ReadFile file = new ReadFile(index, null, null, 0);
+                    try {
+                        file = read(index);
+                    } finally { // even if reading failed, or a verifier would wait for the file forever
+                        queue.put(file);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // the pipeline stopped
+            }
+        }
+
+        /**
+         * Reads a file, once the files read ahead leave room for it.
+         *
+         * @param index index of the file.
+         * @return the read file, without its bytes if it is verified from its path.
+         */
+        private ReadFile read(int index) throws InterruptedException {
+            if (!readAhead) {
+                return new ReadFile(index, null, null, 0);
+            }
+            Path path;
+            int size;
+            try {
+                path = files.get(index).getPath();
+                size = (int) Math.min(Files.size(path), PREFETCH_BYTES);
+            } catch (IOException | RuntimeException e) { // reported when it is verified
+                return new ReadFile(index, null, null, 0);
+            }
+            prefetchBytes.acquire(size);
+            Stats stats = Sjavac.newStats();
+            try {
+                stats.startPhase(Stats.Phase.READ);
+                ByteBuffer source = SyntaxParser.readSource(path);
+                if (source instanceof MappedByteBuffer) { // a large file is mapped, read it here, not when verified
+                    ((MappedByteBuffer) source).load();
+                }
+                stats.endPhase();
+                return new ReadFile(index, source, stats, size);
+            } catch (IOException | RuntimeException e) {
+                prefetchBytes.release(size);
+                return new ReadFile(index, null, null, 0);
+            }
+        }
+
+        /**
+         * Verifies files from the queue until every file was taken by a verifier.
+         *
+         * @return nothing.
+         */
+        private Void verifyFiles() throws InterruptedException {
+            while (nextVerify.getAndIncrement() < results.length) {
+                ReadFile file = queue.take();
+                try {
+                    results[file.index] = verify(file);
+                } catch (RuntimeException | StackOverflowError e) { // a bug of the verifier or a deeply nested
+                    // file must not abort the batch: the file gets code 2, the others are still verified
+                    results[file.index] = new Sjavac.Result(Sjavac.EXCEPTION, e.toString(), Collections.emptyList());
+                } finally {
+                    prefetchBytes.release(file.size);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Verifies a file.
+         *
+         * @param file the file, as read ahead.
+         * @return result of the verification.
+         */
+        private Sjavac.Result verify(ReadFile file) {
+            if (file.source == null) {
+                return Sjavac.verify(files.get(file.index).getPath(), maxErrors, cache, methodPool);
+            }
+            return Sjavac.verify(file.source, maxErrors, cache, methodPool, file.stats);
+        }
+    }
+
+    /**
+     * A file to verify - its name in the output and its path.
+     */
+    private static final class Input {
+        private final String name;
+        private final Path entry;
+
+        /**
+         * This is the constructor of Input.
+         *
+         * @param name  the file's name in the output (its path, unless it is in an archive).
+         * @param entry the file's entry in an opened archive, or null for a file on disk.
+         */
+        Input(String name, Path entry) {
+            this.name = name;
+            this.entry = entry;
+        }
+
+        /**
+         * Gets the path of the file.
+         *
+         * @return the entry in the archive, or the path of the file on disk.
+         */
+        Path getPath() {
+            return entry != null ? entry : Paths.get(name);
+        }
+    }
+
+    /**
+     * A file read ahead - its bytes (null if it is verified from its path), its stats so far and the bytes of
+     * the prefetch budget it takes.
+     */
+    private static final class ReadFile {
+        private final int index;
+        private final ByteBuffer source;
+        private final Stats stats;
+        private final int size;
+
+        ReadFile(int index, ByteBuffer source, Stats stats, int size) {
+            this.index = index;
+            this.source = source;
+            this.stats = stats;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package oop.ex6.main;
+
+import parsing.MainParser;
+import parsing.ParseException;
+import parsing.SyntaxException;
+import parsing.SyntaxParser;
+import scope.BudgetException;
+import scope.Diagnostics;
+import scope.FileContext;
+import scope.Method;
+import scope.Scope;
+import scope.ScopeException;
+import scope.Tokens;
+import scope.Variable;
+import scope.VariableException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies the versions of one file as it is edited, re-verifying only the methods that changed.
+ * <p>
+ * The file is split into its top level methods and its skeleton - the global lines and the method
+ * signatures. The skeleton's global scope (with the methods as stubs) is kept while the skeleton does
+ * not change. A method is verified again, against that global scope, only if its lines changed or it
+ * mentions a global variable or method whose state (type, value, signature) changed - any other
+ * method keeps the errors found for it last time. Errors are collected without a cap and cut to the
+ * cap at the end, so the result is the same as verifying the whole file.
+ */
+class IncrementalVerifier {
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+    private static final int UNKNOWN_LINE = 0;
+    private static final String STUB_END = "}";
+    private static final String LINE_SEPARATOR = "\n";
+    private static final String STATE_SEPARATOR = "\u0000";
+    private static final String METHOD_SUFFIX = "()"; // keeps a method apart from a variable of its name
+    private static final Pattern WORD_PATTERN = Pattern.compile("\\w+");
+
+    private Skeleton lastSkeleton;
+    private Map<String, MethodErrors> lastMethods = new HashMap<>();
+    private int verifiedMethods;
+
+    /**
+     * Verifies a new version of the file.
+     *
+     * @param source    the source code.
+     * @param maxErrors maximal number of errors to report.
+     * @return result of the verification, the same as Sjavac.verifySource gives.
+     */
+    synchronized Sjavac.Result verify(String source, int maxErrors) {
+        try {
+            return verifyChanges(source, maxErrors);
+        } catch (RuntimeException e) { // let the full verification decide what this source gives
+            verifiedMethods = 0;
+            lastSkeleton = null;
+            lastMethods = new HashMap<>();
+            return Sjavac.verifySource(source, maxErrors);
+        }
+    }
+
+    /**
+     * Gets how many methods were verified again for the last version (the others kept their errors).
+     *
+     * @return number of methods, 0 if the last version did not get that far (the whole file was verified).
+     */
+    int getVerifiedMethods() {
+        return verifiedMethods;
+    }
+
+    /**
+     * Verifies a new version of the file, reusing the errors of the methods that did not change.
+     */
+    private Sjavac.Result verifyChanges(String source, int maxErrors) {
+        verifiedMethods = 0;
+        Diagnostics diagnostics = new Diagnostics(UNLIMITED);
+        FileContext context = Sjavac.newContext();
+        String[] lines;
+        try {
+            lines = SyntaxParser.validateSyntax(new BufferedReader(new StringReader(source)), diagnostics, context)
+                    .toArray(new String[0]);
+        } catch (IOException | SyntaxException | BudgetException e) { // only if the budget is used up (no cap)
+            throw new IllegalStateException(e);
+        }
+        if (diagnostics.hasErrors()) { // the scopes are not built, keep the last version's errors
+            return toResult(diagnostics.getDiagnostics(), maxErrors);
+        }
+        int[] lineNumbers = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            lineNumbers[i] = diagnostics.getLineNumber(i);
+        }
+        int[] blockEnds = Scope.matchBlocks(lines);
+        List<Region> methods = findMethods(lines, blockEnds);
+        if (hasInvalidSignature(methods)) {
+            // setting the arguments of such a method fails differently depending on which method
+            // called it first, so the methods are not independent
+            lastSkeleton = null;
+            lastMethods = new HashMap<>();
+            return Sjavac.verifySource(source, maxErrors);
+        }
+
+        String skeletonText = getSkeletonText(lines, methods);
+        Skeleton skeleton = lastSkeleton;
+        Set<String> changedNames = new HashSet<>();
+        if (skeleton == null || !skeleton.text.equals(skeletonText)) {
+            skeleton = new Skeleton(skeletonText, lines, methods);
+            if (lastSkeleton == null) {
+                lastMethods = new HashMap<>();
+            } else {
+                changedNames = getChangedNames(lastSkeleton.globals, skeleton.globals);
+            }
+        }
+        int[] skeletonLines = skeleton.getLineNumbers(lines.length, lineNumbers, methods);
+        List<Diagnostics.Diagnostic> skeletonBuilt = skeleton.getBuilt(skeletonLines);
+        List<Diagnostics.Diagnostic> skeletonParsed = skeleton.getParsed(skeletonLines);
+        Set<Integer> parsedLines = new HashSet<>();
+        for (Diagnostics.Diagnostic diagnostic : skeletonParsed) {
+            parsedLines.add(diagnostic.getLineNumber());
+        }
+
+        Map<String, MethodErrors> methodErrors = new HashMap<>();
+        List<Diagnostics.Diagnostic> built = new ArrayList<>();
+        List<Diagnostics.Diagnostic> parsed = new ArrayList<>(skeletonParsed);
+        int nextBuilt = 0;
+        for (Region method : methods) {
+            MethodErrors errors = lastMethods.get(method.text);
+            if (errors == null || mentions(method.text, changedNames)) {
+                errors = new MethodErrors(skeleton.globalScope, lines, blockEnds, lineNumbers, method, diagnostics,
+                        context);
+                verifiedMethods++;
+            }
+            // errors of the skeleton's blocks before this method come first
+            while (nextBuilt < skeletonBuilt.size() && skeletonBuilt.get(nextBuilt).getLineNumber() <
+                    lineNumbers[method.header]) {
+                built.add(skeletonBuilt.get(nextBuilt++));
+            }
+            built.addAll(errors.getBuilt(method, lineNumbers));
+            // only the first error of a line is kept, and the skeleton's lines are parsed first
+            for (Diagnostics.Diagnostic diagnostic : errors.getParsed(method, lineNumbers)) {
+                if (!parsedLines.contains(diagnostic.getLineNumber())) {
+                    parsed.add(diagnostic);
+                }
+            }
+            methodErrors.put(method.text, errors);
+        }
+        built.addAll(skeletonBuilt.subList(nextBuilt, skeletonBuilt.size()));
+        built.addAll(parsed);
+
+        lastSkeleton = skeleton;
+        lastMethods = methodErrors;
+        return toResult(built, maxErrors);
+    }
+
+    /**
+     * Finds the top level methods of the file (the methods declared in the global scope).
+     */
+    private static List<Region> findMethods(String[] lines, int[] blockEnds) {
+        List<Region> methods = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (blockEnds[i] == Scope.UNCLOSED_BLOCK) {
+                break; // the rest of the file is inside the unclosed block
+            }
+            if (blockEnds[i] != Scope.NOT_A_BLOCK) {
+                Tokens header = Tokens.lex(lines, i, i + 1);
+                int close = header.matchCondition(i) == -1 ? header.matchMethodHeader(i) : -1;
+                if (close != -1) {
+                    methods.add(new Region(lines, i, blockEnds[i], header.getEnd(header.getFirstToken(i) + 2), close));
+                }
+                i = blockEnds[i];
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Checks if the arguments of any top level method are invalid.
+     */
+    private static boolean hasInvalidSignature(List<Region> methods) {
+        for (Region method : methods) {
+            if (!MainParser.hasValidArgs(method.args)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the text of the skeleton - all the lines of the file, without the bodies of the top level
+     * methods.
+     */
+    private static String getSkeletonText(String[] lines, List<Region> methods) {
+        StringBuilder skeleton = new StringBuilder();
+        int next = 0;
+        for (Region method : methods) {
+            for (int i = next; i <= method.header; i++) {
+                skeleton.append(lines[i]).append(LINE_SEPARATOR);
+            }
+            next = method.end + 1;
+        }
+        for (int i = next; i < lines.length; i++) {
+            skeleton.append(lines[i]).append(LINE_SEPARATOR);
+        }
+        return skeleton.toString();
+    }
+
+    /**
+     * Gets the names of the global variables and methods that were added, removed or changed.
+     */
+    private static Set<String> getChangedNames(Map<String, String> last, Map<String, String> current) {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!Objects.equals(last.get(entry.getKey()), entry.getValue())) {
+                names.add(getName(entry.getKey()));
+            }
+        }
+        for (String key : last.keySet()) {
+            if (!current.containsKey(key)) {
+                names.add(getName(key));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Gets the name of a global variable or method from its key in the globals.
+     */
+    private static String getName(String key) {
+        return key.endsWith(METHOD_SUFFIX) ? key.substring(0, key.length() - METHOD_SUFFIX.length()) : key;
+    }
+
+    /**
+     * Checks if a text has any of the given names as a word.
+     */
+    private static boolean mentions(String text, Set<String> names) {
+        if (names.isEmpty()) {
+            return false;
+        }
+        Matcher words = WORD_PATTERN.matcher(text);
+        while (words.find()) {
+            if (names.contains(words.group())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cuts the errors to the cap, giving the result a verification with that cap gives.
+     */
+    private static Sjavac.Result toResult(List<Diagnostics.Diagnostic> diagnostics, int maxErrors) {
+        if (diagnostics.isEmpty()) {
+            return new Sjavac.Result(Sjavac.VALID, null, diagnostics);
+        }
+        List<Diagnostics.Diagnostic> reported = new ArrayList<>(
+                diagnostics.subList(0, Math.min(maxErrors, diagnostics.size())));
+        // the error that reaches the cap stops the verification, and its message is the result's
+        String message = reported.size() == maxErrors ? reported.get(reported.size() - 1).getMessage() :
+                reported.get(0).getMessage();
+        return new Sjavac.Result(Sjavac.INVALID, message, reported);
+    }
+
+    /**
+     * A top level method - the lines from its signature to its closing bracket.
+     */
+    private static class Region {
+        private final int header;
+        private final int end;
+        private final String args;
+        private final String text;
+
+        Region(String[] lines, int header, int end, int argsStart, int argsEnd) {
+            this.header = header;
+            this.end = end;
+            args = lines[header].substring(argsStart, argsEnd);
+            text = String.join(LINE_SEPARATOR, Arrays.asList(lines).subList(header, end + 1));
+        }
+    }
+
+    /**
+     * The skeleton of the file, built and parsed with every top level method as a stub (its signature,
+     * a return and its closing bracket). Its errors are kept by the index of their line in the
+     * skeleton, so they are put back in place when method bodies grow or shrink.
+     */
+    private static class Skeleton {
+        private final String text;
+        private final Scope globalScope;
+        private final List<Diagnostics.Diagnostic> built;
+        private final List<Diagnostics.Diagnostic> parsed;
+        private final Map<String, String> globals = new HashMap<>();
+
+        Skeleton(String text, String[] lines, List<Region> methods) {
+            this.text = text;
+            ArrayList<String> skeletonLines = new ArrayList<>();
+            int next = 0;
+            for (Region method : methods) {
+                skeletonLines.addAll(Arrays.asList(lines).subList(next, method.header + 1));
+                skeletonLines.add(Method.RETURN);
+                skeletonLines.add(STUB_END);
+                next = method.end + 1;
+            }
+            skeletonLines.addAll(Arrays.asList(lines).subList(next, lines.length));
+            Diagnostics diagnostics = new Diagnostics(UNLIMITED);
+            for (int i = 0; i < skeletonLines.size(); i++) {
+                diagnostics.addLine(i + 1); // the "line number" is the index in the skeleton, plus one
+            }
+            try {
+                globalScope = new Scope(skeletonLines, null, diagnostics, Sjavac.newContext());
+                int builtCount = diagnostics.getDiagnostics().size();
+                MainParser.parseLines(globalScope);
+                built = diagnostics.getDiagnostics().subList(0, builtCount);
+                parsed = diagnostics.getDiagnostics().subList(builtCount, diagnostics.getDiagnostics().size());
+            } catch (ScopeException | ParseException | VariableException e) { // only if the budget is used up
+                throw new IllegalStateException(e);
+            }
+            for (Variable var : globalScope.getVars()) {
+                globals.put(var.getName(), var.getType() + STATE_SEPARATOR + var.getValueKinds() + STATE_SEPARATOR +
+                        var.isConstant());
+            }
+            for (Method method : globalScope.getMethodScopes()) {
+                globals.put(method.getMethodName() + METHOD_SUFFIX,
+                        globalScope.getMethodFromName(method.getMethodName()).getMethodArgs());
+            }
+        }
+
+        /**
+         * Gets the source line number of every skeleton line in the current version of the file.
+         */
+        int[] getLineNumbers(int lineCount, int[] lineNumbers, List<Region> methods) {
+            int bodiesSize = 0;
+            for (Region method : methods) {
+                bodiesSize += method.end - method.header;
+            }
+            int[] skeletonLines = new int[lineCount - bodiesSize + 2 * methods.size()];
+            int index = 0;
+            int next = 0;
+            for (Region method : methods) {
+                for (int i = next; i <= method.header; i++) {
+                    skeletonLines[index++] = lineNumbers[i];
+                }
+                skeletonLines[index++] = lineNumbers[method.end]; // the stub's return and closing bracket
+                skeletonLines[index++] = lineNumbers[method.end];
+                next = method.end + 1;
+            }
+            for (int i = next; i < lineCount; i++) {
+                skeletonLines[index++] = lineNumbers[i];
+            }
+            return skeletonLines;
+        }
+
+        /**
+         * Gets the errors found while building the skeleton's scopes, at their current lines.
+         */
+        List<Diagnostics.Diagnostic> getBuilt(int[] skeletonLines) {
+            return toDiagnostics(built, skeletonLines);
+        }
+
+        /**
+         * Gets the errors found while parsing the skeleton's lines, at their current lines.
+         */
+        List<Diagnostics.Diagnostic> getParsed(int[] skeletonLines) {
+            return toDiagnostics(parsed, skeletonLines);
+        }
+
+        /**
+         * Moves errors from their index in the skeleton to their current source line.
+         */
+        private static List<Diagnostics.Diagnostic> toDiagnostics(List<Diagnostics.Diagnostic> errors,
+                                                                  int[] skeletonLines) {
+            List<Diagnostics.Diagnostic> diagnostics = new ArrayList<>(errors.size());
+            for (Diagnostics.Diagnostic error : errors) {
+                int lineNumber = error.getLineNumber() == UNKNOWN_LINE ? UNKNOWN_LINE :
+                        skeletonLines[error.getLineNumber() - 1];
+                diagnostics.add(new Diagnostics.Diagnostic(lineNumber, error.getKind(), error.getMessage()));
+            }
+            return diagnostics;
+        }
+    }
+
+    /**
+     * The errors of one top level method, by the offset of their line from the method's signature, so
+     * they are put back in place when lines before the method are added or removed.
+     */
+    private static class MethodErrors {
+        private final List<Error> built = new ArrayList<>();
+        private final List<Error> parsed = new ArrayList<>();
+
+        /**
+         * Verifies a top level method against the skeleton's global scope.
+         *
+         * @param diagnostics collector of the errors, with the source line numbers of the file.
+         * @param context     budget, stats and conditions of the file.
+         */
+        MethodErrors(Scope globalScope, String[] lines, int[] blockEnds, int[] lineNumbers, Region method,
+                     Diagnostics diagnostics, FileContext context) {
+            List<Diagnostics.Diagnostic> all = diagnostics.getDiagnostics();
+            int first = all.size();
+            try {
+                Method scope = new Method(lines, blockEnds, method.header, globalScope, diagnostics, context);
+                int builtCount = all.size();
+                MainParser.parseMethodBody(scope);
+                for (int i = first; i < all.size(); i++) {
+                    (i < builtCount ? built : parsed).add(new Error(all.get(i), method, lineNumbers));
+                }
+            } catch (ScopeException | ParseException | VariableException e) { // only if the budget is used up
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Gets the errors found while building the method's scopes, at the method's current place.
+         */
+        List<Diagnostics.Diagnostic> getBuilt(Region method, int[] lineNumbers) {
+            return toDiagnostics(built, method, lineNumbers);
+        }
+
+        /**
+         * Gets the errors found while parsing the method, at the method's current place.
+         */
+        List<Diagnostics.Diagnostic> getParsed(Region method, int[] lineNumbers) {
+            return toDiagnostics(parsed, method, lineNumbers);
+        }
+
+        /**
+         * Gets errors at the method's current place.
+         */
+        private static List<Diagnostics.Diagnostic> toDiagnostics(List<Error> errors, Region method,
+                                                                  int[] lineNumbers) {
+            List<Diagnostics.Diagnostic> diagnostics = new ArrayList<>(errors.size());
+            for (Error error : errors) {
+                diagnostics.add(new Diagnostics.Diagnostic(lineNumbers[method.header + error.offset],
+                        error.kind, error.message));
+            }
+            return diagnostics;
+        }
+    }
+
+    /**
+     * An error of a method, by the offset of its line from the method's signature.
+     */
+    private static class Error {
+        private final int offset;
+        private final String kind;
+        private final String message;
+
+        Error(Diagnostics.Diagnostic diagnostic, Region method, int[] lineNumbers) {
+            offset = Arrays.binarySearch(lineNumbers, method.header, method.end + 1,
+                    diagnostic.getLineNumber()) - method.header;
+            kind = diagnostic.getKind();
+            message = diagnostic.getMessage();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package oop.ex6.main;
+
+import scope.Budget;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The command line options of Sjavac - flags first, then the inputs (files, directories or @argfiles).
+ */
+class Options {
+    private static final String MAX_ERRORS = "--max-errors";
+    private static final String SERVER = "--server";
+    private static final String PORT = "--port";
+    private static final String STOP = "--stop";
+    private static final String CACHE = "--cache";
+    private static final String NO_CACHE = "--no-cache";
+    private static final String INCREMENTAL = "--incremental";
+    private static final String PARALLEL = "--parallel";
+    private static final String CACHE_DIR = "--cache-dir";
+    private static final String CACHE_SIZE = "--cache-size";
+    private static final String TIME_LIMIT = "--time-limit";
+    private static final String STEP_LIMIT = "--step-limit";
+    private static final String STATS = "--stats";
+    private static final String FLAG_PREFIX = "--";
+    private static final int FAIL_FAST = 1;
+
+    private final List<String> inputs = new ArrayList<>();
+    private int maxErrors = FAIL_FAST;
+    private boolean server;
+    private boolean stop;
+    private int port = VerifierServer.DEFAULT_PORT;
+    private boolean cache = true;
+    private boolean incremental;
+    private boolean parallel;
+    private String cacheDir = ResultCache.DEFAULT_DIR;
+    private int cacheSize = ResultCache.DEFAULT_SIZE;
+    private long timeLimit = Budget.UNLIMITED;
+    private long stepLimit = Budget.UNLIMITED;
+    private boolean stats;
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args command line arguments.
+     * @return the parsed options.
+     * @throws IllegalArgumentException if a flag is unknown or its value is missing or invalid.
+     */
+    static Options parse(String[] args) {
+        Options options = new Options();
+        int i = 0;
+        while (i < args.length && args[i].startsWith(FLAG_PREFIX)) {
+            if (args[i].equals(MAX_ERRORS) && i + 1 < args.length) {
+                options.maxErrors = parsePositive(args[i], args[++i]);
+            } else if (args[i].equals(SERVER)) {
+                options.server = true;
+            } else if (args[i].equals(STOP)) {
+                options.stop = true;
+            } else if (args[i].equals(PORT) && i + 1 < args.length) {
+                options.port = parsePositive(args[i], args[++i]);
+            } else if (args[i].equals(PARALLEL)) {
+                options.parallel = true;
+            } else if (args[i].equals(INCREMENTAL)) {
+                options.incremental = true;
+            } else if (args[i].equals(CACHE)) { // the default, kept for scripts written when it was not
+                options.cache = true;
+            } else if (args[i].equals(NO_CACHE)) {
+                options.cache = false;
+            } else if (args[i].equals(CACHE_DIR) && i + 1 < args.length) {
+                options.cacheDir = args[++i];
+            } else if (args[i].equals(CACHE_SIZE) && i + 1 < args.length) {
+                options.cacheSize = parsePositive(args[i], args[++i]);
+            } else if (args[i].equals(STATS)) {
+                options.stats = true;
+            } else if (args[i].equals(TIME_LIMIT) && i + 1 < args.length) {
+                options.timeLimit = parsePositive(args[i], args[++i]);
+            } else if (args[i].equals(STEP_LIMIT) && i + 1 < args.length) {
+                options.stepLimit = parsePositive(args[i], args[++i]);
+            } else {
+                throw new IllegalArgumentException("Invalid option " + args[i]);
+            }
+            i++;
+        }
+        for (; i < args.length; i++) {
+            options.inputs.add(args[i]);
+        }
+        return options;
+    }
+
+    /**
+     * Parses the positive number value of a flag.
+     */
+    private static int parsePositive(String flag, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid value for " + flag + ": " + value);
+    }
+
+    /**
+     * Gets the inputs to verify.
+     *
+     * @return files, directories or @argfiles.
+     */
+    List<String> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Gets the maximal number of errors reported per file.
+     *
+     * @return maximal number of errors (1 stops at the first error).
+     */
+    int getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * Checks if all errors of a file are collected instead of stopping at the first one.
+     *
+     * @return true if more than one error is reported per file.
+     */
+    boolean isDiagnosticsMode() {
+        return maxErrors > FAIL_FAST;
+    }
+
+    /**
+     * Checks if the verifier should run as a daemon.
+     *
+     * @return true if --server was given.
+     */
+    boolean isServer() {
+        return server;
+    }
+
+    /**
+     * Checks if the client should shut the verifier daemon down.
+     *
+     * @return true if --stop was given.
+     */
+    boolean isStop() {
+        return stop;
+    }
+
+    /**
+     * Gets the localhost port of the verifier daemon.
+     *
+     * @return the port.
+     */
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * Checks if the method bodies of a file are verified in parallel.
+     *
+     * @return true if --parallel was given.
+     */
+    boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Checks if the client should send the file as a new version of an edited file.
+     *
+     * @return true if --incremental was given.
+     */
+    boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Gets the time a single file may be verified for.
+     *
+     * @return time limit in milliseconds, or Budget.UNLIMITED.
+     */
+    long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Gets the number of steps (tokens) a single file may be verified in.
+     *
+     * @return step limit, or Budget.UNLIMITED.
+     */
+    long getStepLimit() {
+        return stepLimit;
+    }
+
+    /**
+     * Checks if the time, allocation and counts of the verification are recorded.
+     *
+     * @return true if --stats was given.
+     */
+    boolean isStats() {
+        return stats;
+    }
+
+    /**
+     * Opens the result cache.
+     *
+     * @return the cache, or null with --no-cache or if the cache directory can't be used.
+     */
+    ResultCache openCache() {
+        return cache ? ResultCache.open(Paths.get(cacheDir), cacheSize) : null;
+    }
+}
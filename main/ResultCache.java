@@ -0,0 +1,393 @@
+package oop.ex6.main;
+
+import scope.Diagnostics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of verification results, keyed by a hash of the file contents, the verifier
+ * version, the charset and the error cap - so an unchanged file is only hashed, not verified again.
+ * <p>
+ * Every result is one file in the cache directory, named by its key (64 hex digits). A hit touches the
+ * file, and evict() deletes the least recently used results above the size bound - not on every run, so
+ * between evictions the cache may hold a few more results. Other files in the directory are left alone.
+ * The cache is only an optimization, so a failing cache operation is treated as a miss. It is safe to
+ * use from many threads.
+ * <p>
+ * The verifier version is the build stamp the build writes to verifier.properties; only classes built
+ * without it (not by Maven) are hashed, once per run.
+ */
+class ResultCache {
+    static final int DEFAULT_SIZE = 10000;
+    static final String DEFAULT_DIR = System.getProperty("user.home") + "/.cache/sjavac";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int KEY_LENGTH = 64;
+    private static final int NO_MESSAGE = -1;
+    private static final String CORRUPT_ENTRY = "Corrupt cache entry";
+    private static final String VERSION_RESOURCE = "verifier.properties";
+    private static final String BUILD_PROPERTY = "build";
+    private static final String UNFILTERED = "${";
+    private static final String EVICTED_MARKER = ".evicted";
+    private static final long EVICT_INTERVAL_MILLIS = 10 * 60 * 1000;
+    private static final int EVICT_FRACTION = 10;
+    private static byte[] verifierVersion;
+
+    private final Path dir;
+    private final int maxEntries;
+    private final byte[] version;
+    private final AtomicInteger added = new AtomicInteger();
+
+    /**
+     * This is the constructor of ResultCache.
+     *
+     * @param dir        directory of the cache files.
+     * @param maxEntries maximal number of cached results.
+     * @param version    hash of the verifier's classes.
+     */
+    private ResultCache(Path dir, int maxEntries, byte[] version) {
+        this.dir = dir;
+        this.maxEntries = maxEntries;
+        this.version = version;
+    }
+
+    /**
+     * Opens a cache directory, creating it if needed.
+     *
+     * @param dir        directory of the cache files.
+     * @param maxEntries maximal number of cached results.
+     * @return the cache, or null if the directory or the verifier's classes can't be read.
+     */
+    static ResultCache open(Path dir, int maxEntries) {
+        try {
+            Files.createDirectories(dir);
+            return new ResultCache(dir, maxEntries, getVerifierVersion());
+        } catch (IOException | URISyntaxException | SecurityException e) {
+            return null; // run without a cache
+        }
+    }
+
+    /**
+     * Gets the version of the verifier: a hash of its build stamp, or of its classes if it has none.
+     */
+    private static synchronized byte[] getVerifierVersion() throws IOException, URISyntaxException {
+        if (verifierVersion == null) {
+            String build = readBuildStamp();
+            verifierVersion = build != null ? newDigest().digest(build.getBytes(StandardCharsets.UTF_8))
+                    : hashVerifier();
+        }
+        return verifierVersion;
+    }
+
+    /**
+     * Reads the build stamp of the verifier.
+     *
+     * @return the stamp, or null if the classes were not built by Maven.
+     */
+    private static String readBuildStamp() throws IOException {
+        try (InputStream in = ResultCache.class.getResourceAsStream(VERSION_RESOURCE)) {
+            if (in == null) {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(in);
+            String build = properties.getProperty(BUILD_PROPERTY);
+            return build == null || build.contains(UNFILTERED) ? null : build;
+        }
+    }
+
+    /**
+     * Hashes the verifier's classes - the jar, or every class file of the classes directory - so
+     * results of an older verifier are never used.
+     */
+    private static byte[] hashVerifier() throws IOException, URISyntaxException {
+        CodeSource codeSource = ResultCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            throw new IOException("Unknown verifier location");
+        }
+        Path location = Paths.get(codeSource.getLocation().toURI());
+        MessageDigest digest = newDigest();
+        if (Files.isDirectory(location)) {
+            List<Path> classFiles;
+            try (Stream<Path> walk = Files.walk(location)) {
+                classFiles = walk.filter(path -> path.toString().endsWith(CLASS_SUFFIX)).sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path classFile : classFiles) {
+                digest.update(location.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(classFile));
+            }
+        } else {
+            digest.update(Files.readAllBytes(location));
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Creates a new SHA-256 digest.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform supports SHA-256
+        }
+    }
+
+    /**
+     * Gets the key of a file's result.
+     *
+     * @param source    the file's bytes (not changed).
+     * @param maxErrors maximal number of errors collected for the file.
+     * @return the key (hex of the hash).
+     */
+    String getKey(ByteBuffer source, int maxErrors) {
+        MessageDigest digest = newDigest();
+        digest.update(version);
+        digest.update(Charset.defaultCharset().name().getBytes(StandardCharsets.UTF_8));
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, maxErrors));
+        digest.update(source.duplicate());
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets a cached result, marking it as recently used.
+     *
+     * @param key key of the result.
+     * @return the result, or null if it is not cached.
+     */
+    Sjavac.Result get(String key) {
+        Path entry = dir.resolve(key);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(entry)))) {
+            String code = in.readUTF();
+            String message = readString(in);
+            int count = in.readInt();
+            if (count < 0 || count > in.available()) {
+                throw new IOException(CORRUPT_ENTRY);
+            }
+            List<Diagnostics.Diagnostic> diagnostics = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int lineNumber = in.readInt();
+                String kind = in.readUTF();
+                diagnostics.add(new Diagnostics.Diagnostic(lineNumber, kind, readString(in)));
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Sjavac.Result(code, message, diagnostics);
+        } catch (IOException e) {
+            return null; // missing or partly written entry
+        }
+    }
+
+    /**
+     * Caches a result. The entry is written to a temporary file and moved into place, so a
+     * concurrent get never reads half of it.
+     *
+     * @param key    key of the result.
+     * @param result the result.
+     */
+    void put(String key, Sjavac.Result result) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Path temp = null;
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(result.getCode());
+            writeString(out, result.getMessage());
+            out.writeInt(result.getDiagnostics().size());
+            for (Diagnostics.Diagnostic diagnostic : result.getDiagnostics()) {
+                out.writeInt(diagnostic.getLineNumber());
+                out.writeUTF(diagnostic.getKind());
+                writeString(out, diagnostic.getMessage());
+            }
+            out.flush();
+            temp = Files.createTempFile(dir, key, TEMP_SUFFIX);
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            added.incrementAndGet();
+        } catch (IOException e) {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Deletes the least recently used results above the size bound, if results were added and the last
+     * eviction was long ago (or this run added many results). Listing the directory costs more than a
+     * small run, so most runs skip it. Only the cache's own files are touched - results (named by their
+     * key) and temporary files left by a run that stopped - whatever else the directory holds.
+     */
+    void evict() {
+        int count = added.getAndSet(0);
+        if (count == 0 || (count < maxEntries / EVICT_FRACTION && !isEvictionDue())) {
+            return;
+        }
+        Path marker = dir.resolve(EVICTED_MARKER);
+        List<Path> entries = new ArrayList<>();
+        List<Path> temps = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (isKey(name)) {
+                    entries.add(entry);
+                } else if (name.endsWith(TEMP_SUFFIX) && name.length() > KEY_LENGTH
+                        && isKey(name.substring(0, KEY_LENGTH))) { // put names them by their key
+                    temps.add(entry);
+                }
+            }
+            if (!Files.exists(marker)) {
+                Files.createFile(marker);
+            }
+            Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - EVICT_INTERVAL_MILLIS; // newer ones may be being written
+        for (Path temp : temps) {
+            if (getLastUsed(temp) < staleBefore) {
+                deleteQuietly(temp);
+            }
+        }
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        List<Entry> byAge = new ArrayList<>(entries.size());
+        for (Path entry : entries) {
+            long lastUsed = getLastUsed(entry);
+            if (lastUsed != Long.MAX_VALUE) {
+                byAge.add(new Entry(entry, lastUsed));
+            }
+        }
+        byAge.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        for (int i = 0; i < byAge.size() - maxEntries; i++) {
+            deleteQuietly(byAge.get(i).path);
+        }
+    }
+
+    /**
+     * Checks if a file name is a key: KEY_LENGTH lowercase hex digits, as getKey writes them.
+     *
+     * @param name the file name.
+     * @return true if it is a key.
+     */
+    private static boolean isKey(String name) {
+        if (name.length() != KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            char c = name.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the time a cache file was last used.
+     *
+     * @return the time in milliseconds, or Long.MAX_VALUE if the file was deleted by another run.
+     */
+    private static long getLastUsed(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Checks if the last eviction (by any run) is older than the eviction interval.
+     */
+    private boolean isEvictionDue() {
+        try {
+            long last = Files.getLastModifiedTime(dir.resolve(EVICTED_MARKER)).toMillis();
+            return System.currentTimeMillis() - last >= EVICT_INTERVAL_MILLIS;
+        } catch (IOException e) {
+            return true; // never evicted
+        }
+    }
+
+    /**
+     * Deletes a file, ignoring failures.
+     */
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // the next evict() tries again
+        }
+    }
+
+    /**
+     * Writes a string that may be null or longer than writeUTF allows.
+     */
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(NO_MESSAGE);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NO_MESSAGE) {
+            return null;
+        }
+        if (length < 0 || length > in.available()) {
+            throw new IOException(CORRUPT_ENTRY);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A cache file with the time it was last used.
+     */
+    private static class Entry {
+        private final Path path;
+        private final long lastUsed;
+
+        Entry(Path path, long lastUsed) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package oop.ex6.main;
+
+import parsing.MainParser;
+import parsing.ParseException;
+import parsing.SyntaxException;
+import scope.Budget;
+import scope.BudgetException;
+import scope.Diagnostics;
+import scope.FileContext;
+import scope.Scope;
+import scope.ScopeException;
+import scope.Stats;
+import scope.VariableException;
+import parsing.SyntaxParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The main class - parses a sjava file and checks if it's valid.
+ */
+public class Sjavac {
+    static final String VALID = "0";
+    static final String INVALID = "1";
+    static final String EXCEPTION = "2";
+    private static volatile long timeLimit = Budget.UNLIMITED;
+    private static volatile long stepLimit = Budget.UNLIMITED;
+    private static volatile boolean recordStats;
+
+    /**
+     * Main method of Sjava.
+     * A single file argument keeps the original output (code on stdout, message on stderr),
+     * several files, directories, zip or jar archives or an @argfile run in batch mode.
+     * With --max-errors N (N > 1) every error of a file, up to N, is printed with its line.
+     * With --server [--port N] it runs as a daemon that SjavacClient sends its files to.
+     * Results of unchanged files are taken from the result cache, unless --no-cache is given.
+     * With --parallel the method bodies of a file are verified in parallel (in the common pool, or in batch mode in a
+     * pool of the batch's size).
+     * With --time-limit MS or --step-limit N a file that takes longer (or more tokens) to verify is
+     * stopped with code 2.
+     * With --stats the time, allocation and counts of every phase are printed on stderr as JSON (summed over all
+     * the files in batch mode).
+     */
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(EXCEPTION);
+            System.err.println(e.getMessage());
+            return;
+        }
+        setLimits(options.getTimeLimit(), options.getStepLimit());
+        setRecordStats(options.isStats());
+        if (options.isServer()) {
+            VerifierServer.run(options.getPort(), options.isStats());
+            return;
+        }
+        if (BatchVerifier.isBatch(options.getInputs())) {
+            BatchVerifier.run(options);
+            return;
+        }
+        ResultCache cache = options.openCache();
+        Result result = verify(options.getInputs().get(0), options.getMaxErrors(), cache,
+                options.isParallel() ? ForkJoinPool.commonPool() : null);
+        print(result, options.isDiagnosticsMode());
+        if (options.isStats()) {
+            System.err.println(result.getStats().toJson());
+        }
+        if (cache != null) {
+            cache.evict();
+        }
+    }
+
+    /**
+     * Sets the budget of every file verified from now on.
+     *
+     * @param timeLimitMillis maximal time to verify a file, in milliseconds (Budget.UNLIMITED for no limit).
+     * @param maxSteps        maximal number of steps (tokens) to verify a file (Budget.UNLIMITED for no limit).
+     */
+    static void setLimits(long timeLimitMillis, long maxSteps) {
+        timeLimit = timeLimitMillis;
+        stepLimit = maxSteps;
+    }
+
+    /**
+     * Sets whether the stats of every file verified from now on are recorded.
+     *
+     * @param record true to record the stats.
+     */
+    static void setRecordStats(boolean record) {
+        recordStats = record;
+    }
+
+    /**
+     * Creates the stats of a file.
+     *
+     * @return new stats, or Stats.DISABLED if stats are not recorded.
+     */
+    static Stats newStats() {
+        return recordStats ? new Stats() : Stats.DISABLED;
+    }
+
+    /**
+     * Creates the context of a file, with the file's budget and stats.
+     *
+     * @return the context.
+     */
+    static FileContext newContext() {
+        return newContext(newStats());
+    }
+
+    /**
+     * Creates the context of a file, with the file's budget.
+     *
+     * @param stats stats of the file.
+     * @return the context.
+     */
+    private static FileContext newContext(Stats stats) {
+        boolean limited = timeLimit != Budget.UNLIMITED || stepLimit != Budget.UNLIMITED;
+        return new FileContext(limited ? new Budget(timeLimit, stepLimit) : null, stats);
+    }
+
+    /**
+     * Prints a result - the code on stdout and the errors on stderr.
+     *
+     * @param result           result of the verification.
+     * @param diagnosticsMode true to print every error with its line.
+     */
+    static void print(Result result, boolean diagnosticsMode) {
+        System.out.println(result.getCode()); // program ends here if valid
+        String report = result.getReport(diagnosticsMode);
+        if (report != null) {
+            System.err.println(report);
+        }
+    }
+
+    /**
+     * Verifies a single sjava file, stopping at the first error.
+     *
+     * @param path path of the file.
+     * @return result of the verification.
+     */
+    static Result verify(String path) {
+        return verify(path, Diagnostics.FAIL_FAST);
+    }
+
+    /**
+     * Verifies a single sjava file.
+     *
+     * @param path      path of the file.
+     * @param maxErrors maximal number of errors to collect before stopping.
+     * @return result of the verification.
+     */
+    static Result verify(String path, int maxErrors) {
+        return verify((diagnostics, context) -> SyntaxParser.validateSyntax(Paths.get(path), diagnostics, context),
+                maxErrors, null, newStats());
+    }
+
+    /**
+     * Verifies a single sjava file, taking the result from the cache if the file was verified before.
+     *
+     * @param path      path of the file.
+     * @param maxErrors maximal number of errors to collect before stopping.
+     * @param cache     the result cache, or null to always verify.
+     * @param pool      the pool to verify the method bodies in parallel in, or null to verify them in order.
+     * @return result of the verification.
+     */
+    static Result verify(String path, int maxErrors, ResultCache cache, ForkJoinPool pool) {
+        return verify(Paths.get(path), maxErrors, cache, pool);
+    }
+
+    /**
+     * Verifies a single sjava file (on disk or in an archive), taking the result from the cache if the file was
+     * verified before.
+     *
+     * @param path      path of the file.
+     * @param maxErrors maximal number of errors to collect before stopping.
+     * @param cache     the result cache, or null to always verify.
+     * @param pool      the pool to verify the method bodies in parallel in, or null to verify them in order.
+     * @return result of the verification.
+     */
+    static Result verify(Path path, int maxErrors, ResultCache cache, ForkJoinPool pool) {
+        ByteBuffer source;
+        Stats stats = newStats();
+        try {
+            if (cache == null || SyntaxParser.getSize(path) > Integer.MAX_VALUE) {
+                return verify((diagnostics, context) -> SyntaxParser.validateSyntax(path, diagnostics, context),
+                        maxErrors, pool, stats);
+            }
+            stats.startPhase(Stats.Phase.READ);
+            source = SyntaxParser.readSource(path);
+        } catch (IOException e) {
+            return new Result(EXCEPTION, e.getMessage(), Collections.emptyList());
+        }
+        return verify(source, maxErrors, cache, pool, stats);
+    }
+
+    /**
+     * Verifies a file read beforehand (by SyntaxParser.readSource), taking the result from the cache if the
+     * file was verified before.
+     *
+     * @param source    the file's bytes.
+     * @param maxErrors maximal number of errors to collect before stopping.
+     * @param cache     the result cache, or null to always verify.
+     * @param pool      the pool to verify the method bodies in parallel in, or null to verify them in order.
+     * @param stats     stats of the file.
+     * @return result of the verification.
+     */
+    static Result verify(ByteBuffer source, int maxErrors, ResultCache cache, ForkJoinPool pool, Stats stats) {
+        if (cache == null) {
+            return verify((diagnostics, context) -> SyntaxParser.validateSyntax(source, diagnostics, context),
+                    maxErrors, pool, stats);
+        }
+        stats.startPhase(Stats.Phase.READ); // hashing the file
+        String key = cache.getKey(source, maxErrors);
+        Result result = cache.get(key);
+        if (result == null) {
+            result = verify((diagnostics, context) -> SyntaxParser.validateSyntax(source, diagnostics, context),
+                    maxErrors, pool, stats);
+            if (!result.getCode().equals(EXCEPTION)) {
+                cache.put(key, result);
+            }
+        } else if (stats.isEnabled()) {
+            stats.endPhase();
+            stats.count(Stats.Counter.FILES);
+            stats.count(Stats.Counter.CACHE_HITS);
+            result = new Result(result.getCode(), result.getMessage(), result.getDiagnostics(), stats);
+        }
+        return result;
+    }
+
+    /**
+     * Verifies sjava source code given as a string.
+     *
+     * @param source    the source code.
+     * @param maxErrors maximal number of errors to collect before stopping.
+     * @return result of the verification.
+     */
+    static Result verifySource(String source, int maxErrors) {
+        return verify((diagnostics, context) -> SyntaxParser.validateSyntax(
+                new BufferedReader(new StringReader(source)), diagnostics, context), maxErrors, null, newStats());
+    }
+
+    /**
+     * Verifies a source.
+     *
+     * @param sourceReader reads the source and checks its syntax.
+     * @param maxErrors    maximal number of errors to collect before stopping.
+     * @param pool         the pool to verify the method bodies in parallel in, or null to verify them in order.
+     * @param stats        stats of the file.
+     * @return result of the verification.
+     */
+    private static Result verify(SourceReader sourceReader, int maxErrors, ForkJoinPool pool, Stats stats) {
+        stats.count(Stats.Counter.FILES);
+        try {
+            return verify(sourceReader, pool, new Diagnostics(maxErrors), newContext(stats));
+        } finally {
+            stats.endPhase();
+        }
+    }
+
+    /**
+     * Verifies a source, reporting its errors to the given diagnostics.
+     *
+     * @param sourceReader reads the source and checks its syntax.
+     * @param pool         the pool to verify the method bodies in parallel in, or null to verify them in order.
+     * @param diagnostics  collector of the errors of the source.
+     * @param context      budget, stats and conditions of the source.
+     * @return result of the verification.
+     */
+    static Result verify(SourceReader sourceReader, ForkJoinPool pool, Diagnostics diagnostics, FileContext context) {
+        try {
+
+            ArrayList<String> cleanSourceCode = sourceReader.read(diagnostics, context);
+
+            // the scopes of a file with invalid syntax are not reliable
+            if (!diagnostics.hasErrors()) {
+                // create scopes recursively, starting from global scope
+                Scope globalScope = new Scope(cleanSourceCode, null, diagnostics, context);
+
+                // parse global scope (and inner scopes)
+                context.getStats().startPhase(Stats.Phase.PARSE);
+                if (pool != null) {
+                    MainParser.mainParseParallel(globalScope, pool);
+                } else {
+                    MainParser.mainParse(globalScope);
+                }
+            }
+
+        } catch (IOException e) {
+            return new Result(EXCEPTION, e.getMessage(), diagnostics.getDiagnostics(), context.getStats());
+        } catch (BudgetException e) { // the file is neither valid nor invalid
+            return new Result(EXCEPTION, e.getMessage(), diagnostics.getDiagnostics(), context.getStats());
+        } catch (ScopeException | ParseException | VariableException e) {
+            return new Result(INVALID, e.getMessage(), diagnostics.getDiagnostics(), context.getStats());
+        }
+        if (diagnostics.hasErrors()) {
+            return new Result(INVALID, diagnostics.getDiagnostics().get(0).getMessage(),
+                    diagnostics.getDiagnostics(), context.getStats());
+        }
+        return new Result(VALID, null, diagnostics.getDiagnostics(), context.getStats());
+    }
+
+    /**
+     * Reads a source and checks its syntax.
+     */
+    interface SourceReader {
+        /**
+         * Reads the source, reporting syntax errors to the given diagnostics.
+         *
+         * @param diagnostics collector of the errors of the source.
+         * @param context     stats and budget of the source.
+         * @return the cleaned lines of the source.
+         */
+        ArrayList<String> read(Diagnostics diagnostics, FileContext context) throws IOException, SyntaxException,
+                BudgetException;
+    }
+
+    /**
+     * The result of verifying one file - the printed code, the error message (if any) and all
+     * reported errors.
+     */
+    static final class Result {
+        private final String code;
+        private final String message;
+        private final List<Diagnostics.Diagnostic> diagnostics;
+        private final Stats stats;
+
+        Result(String code, String message, List<Diagnostics.Diagnostic> diagnostics) {
+            this(code, message, diagnostics, Stats.DISABLED);
+        }
+
+        Result(String code, String message, List<Diagnostics.Diagnostic> diagnostics, Stats stats) {
+            this.code = code;
+            this.message = message;
+            this.diagnostics = diagnostics;
+            this.stats = stats;
+        }
+
+        /**
+         * Gets the result code (0, 1 or 2).
+         * @return result code.
+         */
+        String getCode() {
+            return code;
+        }
+
+        /**
+         * Gets the error message.
+         * @return error message of the first error, or null if the file is valid.
+         */
+        String getMessage() {
+            return message;
+        }
+
+        /**
+         * Gets the text printed for the errors.
+         * @param diagnosticsMode true for every error with its line, false for the first error's message.
+         * @return the errors, or null if there are none.
+         */
+        String getReport(boolean diagnosticsMode) {
+            if (!diagnosticsMode || diagnostics.isEmpty()) {
+                return message;
+            }
+            StringBuilder report = new StringBuilder();
+            for (Diagnostics.Diagnostic diagnostic : diagnostics) {
+                if (report.length() > 0) {
+                    report.append(System.lineSeparator());
+                }
+                report.append(diagnostic);
+            }
+            return report.toString();
+        }
+
+        /**
+         * Gets all reported errors with their lines.
+         * @return reported errors.
+         */
+        List<Diagnostics.Diagnostic> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * Gets the stats of the verification.
+         * @return stats (Stats.DISABLED if not recorded or the result was not verified in full).
+         */
+        Stats getStats() {
+            return stats;
+        }
+    }
+}
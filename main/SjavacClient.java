@@ -0,0 +1,184 @@
+package oop.ex6.main;
+
+import scope.Diagnostics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+
+/**
+ * A thin client of the verifier daemon with the same command line contract as Sjavac: it prints
+ * 0/1/2 on stdout and the message on stderr. The client reads the file and sends its source. If no daemon
+ * is running, or the file can't be sent (it can't be read or decoded, or is too large), the file is
+ * verified in this process, so the result never depends on the daemon. The daemon must first prove it
+ * knows the token in the owner-only token file, so a process of another user that bound the port is
+ * never trusted (nor sent the token to stop it).
+ */
+public class SjavacClient {
+    private static final String STDIN = "-";
+    private static final char PATH_END = '\n';
+    private static final String TOO_LARGE = "Too large for the daemon";
+    private static final String NO_TOKEN = "No server token ";
+    private static final String NOT_THE_SERVER = "Not the server that wrote the token, on port ";
+
+    /**
+     * Main method of the client.
+     *
+     * @param args [--port N] [--max-errors N] [--incremental] file ("-" sends the source read from stdin),
+     *             or [--port N] --stop to shut the daemon down. With --incremental the daemon keeps the
+     *             file's last version and re-verifies only the methods that changed since.
+     */
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(Sjavac.EXCEPTION);
+            System.err.println(e.getMessage());
+            return;
+        }
+        if (options.isStop()) {
+            stopServer(options.getPort());
+            return;
+        }
+        if (options.getInputs().size() != 1 || (!options.getInputs().get(0).equals(STDIN)
+                && BatchVerifier.isBatch(options.getInputs()))) {
+            Sjavac.main(args); // batch mode runs in this process
+            return;
+        }
+        boolean fromStdin = options.getInputs().get(0).equals(STDIN);
+        boolean edit = options.isIncremental() && !fromStdin;
+        String path = Paths.get(options.getInputs().get(0)).toAbsolutePath().toString();
+        String source;
+        try {
+            source = fromStdin ? new String(System.in.readAllBytes(), StandardCharsets.UTF_8) : readSource(path);
+        } catch (IOException e) {
+            if (fromStdin) {
+                Sjavac.print(new Sjavac.Result(Sjavac.EXCEPTION, e.getMessage(), Collections.emptyList()), false);
+                return;
+            }
+            source = null; // verified here, with the same message as Sjavac
+        }
+        Sjavac.Result result = null;
+        if (source != null) {
+            try {
+                result = request(options.getPort(), edit ? VerifierServer.VERIFY_EDIT : VerifierServer.VERIFY_SOURCE,
+                        options.getMaxErrors(), edit ? path + PATH_END + source : source);
+            } catch (IOException e) {
+                // no daemon
+            }
+        }
+        if (result == null) {
+            result = fromStdin ? Sjavac.verifySource(source, options.getMaxErrors()) :
+                    Sjavac.verify(path, options.getMaxErrors());
+        }
+        Sjavac.print(result, options.isDiagnosticsMode());
+    }
+
+    /**
+     * Reads the source of a file in the default charset, the same as Sjavac does.
+     *
+     * @param path path of the file.
+     * @return the source, or null if it is too large to send.
+     * @throws IOException if the file can't be read, or has bytes that are not chars of the charset.
+     */
+    private static String readSource(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (Files.size(file) > VerifierServer.MAX_PAYLOAD) {
+            return null;
+        }
+        return Charset.defaultCharset().newDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(file))).toString();
+    }
+
+    /**
+     * Sends one request to the daemon and reads its response.
+     *
+     * @param port      localhost port of the daemon.
+     * @param kind      kind of the request.
+     * @param maxErrors maximal number of errors to report.
+     * @param payload   source code, the path and source of an edited file, or the STOP token.
+     * @return the daemon's result (the message is the whole report of the errors).
+     * @throws IOException if there is no daemon of this user (or the process on the port is not it), or the
+     *                     payload is larger than it accepts.
+     */
+    static Sjavac.Result request(int port, byte kind, int maxErrors, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > VerifierServer.MAX_PAYLOAD) {
+            throw new IOException(TOO_LARGE);
+        }
+        byte[] token = readToken(port);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            byte[] challenge = new byte[VerifierServer.CHALLENGE_BYTES];
+            new SecureRandom().nextBytes(challenge);
+            out.write(challenge);
+            out.flush();
+            byte[] expected = VerifierServer.proof(token, challenge);
+            byte[] proof = new byte[expected.length];
+            in.readFully(proof);
+            if (!MessageDigest.isEqual(proof, expected)) {
+                throw new IOException(NOT_THE_SERVER + port);
+            }
+            out.writeByte(kind);
+            out.writeInt(maxErrors);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+            String code = in.readUTF();
+            int length = in.readInt();
+            String message = null;
+            if (length != VerifierServer.NO_MESSAGE) {
+                byte[] messageBytes = new byte[length];
+                in.readFully(messageBytes);
+                message = new String(messageBytes, StandardCharsets.UTF_8);
+            }
+            return new Sjavac.Result(code, message, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Reads the token the daemon of a port wrote.
+     *
+     * @param port localhost port of the daemon.
+     * @return the token.
+     * @throws IOException if this user has no daemon on the port.
+     */
+    private static byte[] readToken(int port) throws IOException {
+        Path tokenPath = VerifierServer.getTokenPath(port);
+        if (!Files.isReadable(tokenPath)) {
+            throw new IOException(NO_TOKEN + tokenPath);
+        }
+        return Files.readAllBytes(tokenPath);
+    }
+
+    /**
+     * Asks the daemon to shut down, with the token it wrote (only its user can read it).
+     *
+     * @param port localhost port of the daemon.
+     */
+    private static void stopServer(int port) {
+        try {
+            String token = new String(readToken(port), StandardCharsets.UTF_8);
+            Sjavac.Result result = request(port, VerifierServer.STOP, Diagnostics.FAIL_FAST, token);
+            if (result.getMessage() != null) {
+                System.err.println(result.getMessage());
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package oop.ex6.main;
+
+import scope.Stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records the stats of the requests of the verifier daemon: sums them for JMX (as "oop.ex6.main:type=Verifier")
+ * and commits a VerificationEvent for every request while JFR records it.
+ */
+class StatsMonitor implements StatsMonitorMXBean {
+    static final String OBJECT_NAME = "oop.ex6.main:type=Verifier";
+
+    private volatile Stats total = new Stats();
+
+    /**
+     * Creates a monitor and registers it with the platform MBean server.
+     *
+     * @return the monitor.
+     * @throws JMException if it can't be registered.
+     */
+    static StatsMonitor register() throws JMException {
+        StatsMonitor monitor = new StatsMonitor();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, new ObjectName(OBJECT_NAME));
+        return monitor;
+    }
+
+    /**
+     * Runs a verification and records its stats.
+     *
+     * @param request      name of the request.
+     * @param verification the verification.
+     * @return result of the verification.
+     */
+    Sjavac.Result record(String request, Supplier<Sjavac.Result> verification) {
+        VerificationEvent event = new VerificationEvent();
+        event.begin();
+        Sjavac.Result result = verification.get();
+        event.end();
+        Stats stats = result.getStats();
+        total.add(stats);
+        if (event.shouldCommit()) {
+            event.request = request;
+            event.code = result.getCode();
+            event.lines = stats.getCount(Stats.Counter.LINES);
+            event.scopes = stats.getCount(Stats.Counter.SCOPES);
+            event.methods = stats.getCount(Stats.Counter.METHODS);
+            event.variables = stats.getCount(Stats.Counter.VARIABLES);
+            event.calls = stats.getCount(Stats.Counter.CALLS);
+            event.readTime = stats.getNanos(Stats.Phase.READ);
+            event.cleanTime = stats.getNanos(Stats.Phase.CLEAN);
+            event.bracketsTime = stats.getNanos(Stats.Phase.BRACKETS);
+            event.scopesTime = stats.getNanos(Stats.Phase.SCOPES);
+            event.parseTime = stats.getNanos(Stats.Phase.PARSE);
+            for (Stats.Phase phase : Stats.Phase.values()) {
+                event.allocated += stats.getBytes(phase);
+            }
+            event.commit();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Stats stats = total;
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Stats.Counter counter : Stats.Counter.values()) {
+            counts.put(counter.getKey(), stats.getCount(counter));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseNanos() {
+        Stats stats = total;
+        Map<String, Long> nanos = new LinkedHashMap<>();
+        for (Stats.Phase phase : Stats.Phase.values()) {
+            nanos.put(phase.getKey(), stats.getNanos(phase));
+        }
+        return nanos;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseBytes() {
+        Stats stats = total;
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        for (Stats.Phase phase : Stats.Phase.values()) {
+            bytes.put(phase.getKey(), stats.getBytes(phase));
+        }
+        return bytes;
+    }
+
+    @Override
+    public String getJson() {
+        return total.toJson();
+    }
+
+    @Override
+    public void reset() {
+        total = new Stats();
+    }
+}
@@ -0,0 +1,41 @@
+package oop.ex6.main;
+
+import java.util.Map;
+
+/**
+ * The stats of the verifier daemon, summed over all the requests since it started (or was reset).
+ */
+public interface StatsMonitorMXBean {
+    /**
+     * Gets the counts (files, cache hits, lines, scopes, methods, variables and calls).
+     *
+     * @return count by name.
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * Gets the time spent in every phase.
+     *
+     * @return nanoseconds by phase name.
+     */
+    Map<String, Long> getPhaseNanos();
+
+    /**
+     * Gets the bytes allocated in every phase.
+     *
+     * @return bytes by phase name.
+     */
+    Map<String, Long> getPhaseBytes();
+
+    /**
+     * Gets all the stats as the JSON that --stats prints.
+     *
+     * @return the JSON text.
+     */
+    String getJson();
+
+    /**
+     * Starts summing again from zero.
+     */
+    void reset();
+}
@@ -0,0 +1,64 @@
+package oop.ex6.main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event for every request the verifier daemon answers (when it records stats), with the stats of the
+ * verification. A request that is not verified in full (an edit, or a cached result) has only some of them.
+ */
+@Name("oop.ex6.main.Verification")
+@Label("Sjava Verification")
+@Category("Sjavac")
+@Description("A request answered by the verifier daemon")
+class VerificationEvent extends Event {
+    @Label("Request Kind")
+    String request;
+
+    @Label("Result Code")
+    String code;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Scopes")
+    long scopes;
+
+    @Label("Methods")
+    long methods;
+
+    @Label("Variables")
+    long variables;
+
+    @Label("Calls")
+    long calls;
+
+    @Label("Read Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long readTime;
+
+    @Label("Clean Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cleanTime;
+
+    @Label("Brackets Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long bracketsTime;
+
+    @Label("Scopes Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long scopesTime;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocated;
+}
@@ -0,0 +1,127 @@
+package oop.ex6.main;
+
+import scope.Diagnostics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of verifying one source with a Verifier: the verdict and the errors found.
+ */
+public class VerificationResult {
+    /**
+     * The verdicts, with the code Sjavac prints for them.
+     */
+    public enum Verdict {
+        VALID(Sjavac.VALID), INVALID(Sjavac.INVALID), ERROR(Sjavac.EXCEPTION);
+
+        private final String code;
+
+        /**
+         * This is the constructor of Verdict.
+         *
+         * @param code the printed code.
+         */
+        Verdict(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Gets the code Sjavac prints for the verdict.
+         *
+         * @return "0", "1" or "2".
+         */
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * Gets the verdict of a printed code.
+         *
+         * @param code "0", "1" or "2".
+         * @return the verdict.
+         */
+        static Verdict fromCode(String code) {
+            for (Verdict verdict : values()) {
+                if (verdict.code.equals(code)) {
+                    return verdict;
+                }
+            }
+            throw new IllegalArgumentException(code);
+        }
+    }
+
+    private final Verdict verdict;
+    private final String message;
+    private final List<Diagnostics.Diagnostic> diagnostics;
+
+    /**
+     * This is the constructor of VerificationResult.
+     *
+     * @param result the result Sjavac prints.
+     */
+    VerificationResult(Sjavac.Result result) {
+        this.verdict = Verdict.fromCode(result.getCode());
+        this.message = result.getMessage();
+        this.diagnostics = Collections.unmodifiableList(result.getDiagnostics());
+    }
+
+    /**
+     * Gets the verdict.
+     *
+     * @return VALID, INVALID, or ERROR if the source could not be read or used up its budget.
+     */
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * Checks if the source is valid.
+     *
+     * @return true for a VALID verdict.
+     */
+    public boolean isValid() {
+        return verdict == Verdict.VALID;
+    }
+
+    /**
+     * Gets the kind of the first error.
+     *
+     * @return kind of the error (its exception class), or null if no error was found in the source.
+     */
+    public String getKind() {
+        return diagnostics.isEmpty() ? null : diagnostics.get(0).getKind();
+    }
+
+    /**
+     * Gets the source line number of the first error.
+     *
+     * @return line number (starting at 1, 0 if the error has no line), or 0 if no error was found in the source.
+     */
+    public int getLine() {
+        return diagnostics.isEmpty() ? 0 : diagnostics.get(0).getLineNumber();
+    }
+
+    /**
+     * Gets the message Sjavac prints.
+     *
+     * @return message of the error that stopped the verification, or null if the source is valid.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets all the errors found, in the order they were found.
+     *
+     * @return errors with their lines (read only).
+     */
+    public List<Diagnostics.Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    @Override
+    public String toString() {
+        return diagnostics.isEmpty() ? verdict.getCode() : verdict.getCode() + " " + diagnostics.get(0);
+    }
+}
@@ -0,0 +1,100 @@
+package oop.ex6.main;
+
+import parsing.SyntaxParser;
+import scope.Budget;
+import scope.Diagnostics;
+import scope.FileContext;
+import scope.Stats;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Verifies sjava sources in-process, returning the result instead of printing it.
+ * A Verifier only keeps its settings, so one instance may verify any number of sources, from any number of
+ * threads at once. Sjavac prints the code of the same result (the verdict) and its message.
+ */
+public class Verifier {
+    private final int maxErrors;
+    private final boolean parallel;
+    private final long timeLimit;
+    private final long maxSteps;
+
+    /**
+     * This is the constructor of Verifier that stops at the first error, without limits.
+     */
+    public Verifier() {
+        this(Diagnostics.FAIL_FAST);
+    }
+
+    /**
+     * This is the constructor of Verifier that collects up to the given number of errors, without limits.
+     *
+     * @param maxErrors maximal number of errors to collect before stopping.
+     */
+    public Verifier(int maxErrors) {
+        this(maxErrors, false, Budget.UNLIMITED, Budget.UNLIMITED);
+    }
+
+    /**
+     * This is the constructor of Verifier.
+     *
+     * @param maxErrors maximal number of errors to collect before stopping.
+     * @param parallel  true to verify the method bodies of a source in parallel (in the common pool).
+     * @param timeLimit maximal time to verify a source, in milliseconds (Budget.UNLIMITED for no limit).
+     * @param maxSteps  maximal number of steps (tokens) to verify a source (Budget.UNLIMITED for no limit).
+     */
+    public Verifier(int maxErrors, boolean parallel, long timeLimit, long maxSteps) {
+        this.maxErrors = maxErrors;
+        this.parallel = parallel;
+        this.timeLimit = timeLimit;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Verifies a file, read in the default charset.
+     *
+     * @param path path of the file.
+     * @return result of the verification (ERROR if the file can't be read).
+     */
+    public VerificationResult verify(Path path) {
+        return verify((diagnostics, context) -> SyntaxParser.validateSyntax(path, diagnostics, context));
+    }
+
+    /**
+     * Verifies a source read from a reader. The reader is read to the end, but not closed.
+     *
+     * @param reader the source.
+     * @return result of the verification (ERROR if the reader fails).
+     */
+    public VerificationResult verify(Reader reader) {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        return verify((diagnostics, context) -> SyntaxParser.validateSyntax(lines, diagnostics, context));
+    }
+
+    /**
+     * Verifies a source given as text.
+     *
+     * @param source the source code.
+     * @return result of the verification.
+     */
+    public VerificationResult verify(CharSequence source) {
+        return verify(new StringReader(source.toString()));
+    }
+
+    /**
+     * Verifies a source with a new collector of its errors and a new context.
+     *
+     * @param sourceReader reads the source and checks its syntax.
+     * @return result of the verification.
+     */
+    private VerificationResult verify(Sjavac.SourceReader sourceReader) {
+        boolean limited = timeLimit != Budget.UNLIMITED || maxSteps != Budget.UNLIMITED;
+        FileContext context = new FileContext(limited ? new Budget(timeLimit, maxSteps) : null, Stats.DISABLED);
+        return new VerificationResult(Sjavac.verify(sourceReader, parallel ? ForkJoinPool.commonPool() : null,
+                new Diagnostics(maxErrors), context));
+    }
+}
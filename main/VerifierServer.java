@@ -0,0 +1,347 @@
+package oop.ex6.main;
+
+import scope.Diagnostics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.management.JMException;
+
+/**
+ * A long running verifier that answers verification requests on a localhost port, so the JVM is
+ * started (and the verifier warmed up) once for many checks.
+ * <p>
+ * A connection starts with the client's challenge (CHALLENGE_BYTES random bytes), which the server answers
+ * with proof(token, challenge) - so a client trusts only the server that wrote the token, not any process
+ * that bound the port first. Then it carries any number of requests, each answered in order:
+ * request - kind (byte), max errors (int), payload length (int, at most MAX_PAYLOAD), payload (UTF-8 bytes);
+ * response - code (UTF), message length (int, -1 for no message), message (UTF-8 bytes).
+ * The payload is the source itself (VERIFY_SOURCE), or a file path, a line break and the file's current
+ * source (VERIFY_EDIT) - the server keeps the last version of the recently edited files and re-verifies
+ * only the methods that changed. The server never opens a file it is sent the path of: the client reads it.
+ * A STOP request, whose payload is the token the server wrote to an owner-only file, shuts the server down.
+ * Any local user may connect, so the connections are served by a bounded pool, and one that stays idle
+ * is closed.
+ * With --stats the stats of the requests are summed in an MXBean and sent to JFR as VerificationEvents.
+ */
+public class VerifierServer {
+    static final int DEFAULT_PORT = 7735;
+    static final byte VERIFY_SOURCE = 'S';
+    static final byte VERIFY_EDIT = 'E';
+    static final byte STOP = 'Q';
+    static final int NO_MESSAGE = -1;
+    static final int MAX_PAYLOAD = 16 << 20;
+    private static final String UNKNOWN_REQUEST = "Unknown request ";
+    private static final String INVALID_LENGTH = "Invalid request length ";
+    private static final String NOT_AUTHORIZED = "Not authorized to stop the server";
+    private static final String TOKEN_DIR = System.getProperty("user.home") + "/.sjavac";
+    private static final String TOKEN_PREFIX = "server-";
+    private static final String TOKEN_SUFFIX = ".token";
+    private static final String OWNER_ONLY_DIR = "rwx------";
+    private static final String OWNER_ONLY_FILE = "rw-------";
+    private static final int TOKEN_BYTES = 32;
+    static final int CHALLENGE_BYTES = 32;
+    private static final String PROOF_ALGORITHM = "HmacSHA256";
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int IDLE_TIMEOUT_MILLIS = 60_000;
+    private static final int WARM_UP_ROUNDS = 2000;
+    private static final int MAX_EDITED_FILES = 64;
+    private static final char PATH_END = '\n';
+    private static final String WARM_UP_SOURCE = String.join("\n",
+            "int count = 0;",
+            "final double ratio = 1.5;",
+            "void check(int a, boolean b, String s) {",
+            "    char c = 'c';",
+            "    if (b || a) {",
+            "        while (ratio && true) {",
+            "            int x = a; // comment",
+            "        }",
+            "    }",
+            "    check(count, false, \"s\");",
+            "    return;",
+            "}");
+
+    private final ServerSocket serverSocket;
+    private final StatsMonitor monitor;
+    private final byte[] token;
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(0, MAX_CONNECTIONS, IDLE_TIMEOUT_MILLIS,
+            TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+    private final Map<String, IncrementalVerifier> editedFiles = Collections.synchronizedMap(
+            new LinkedHashMap<String, IncrementalVerifier>(MAX_EDITED_FILES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IncrementalVerifier> eldest) {
+                    return size() > MAX_EDITED_FILES;
+                }
+            });
+
+    /**
+     * This is the constructor of VerifierServer, it binds the port on the loopback address only, then writes
+     * the STOP token (so a server that can't bind never replaces the token of the one that did).
+     *
+     * @param port    localhost port to listen on.
+     * @param monitor records the stats of the requests, or null if they are not recorded.
+     */
+    VerifierServer(int port, StatsMonitor monitor) throws IOException {
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.monitor = monitor;
+        try {
+            token = writeToken(port).getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the file a server writes its STOP token to.
+     *
+     * @param port localhost port of the server.
+     * @return path of the token file.
+     */
+    static Path getTokenPath(int port) {
+        return Paths.get(TOKEN_DIR, TOKEN_PREFIX + port + TOKEN_SUFFIX);
+    }
+
+    /**
+     * Creates a new random STOP token and writes it to a file only its owner can read.
+     *
+     * @param port localhost port of the server.
+     * @return the token.
+     */
+    private static String writeToken(int port) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        String newToken = HexFormat.of().formatHex(random);
+        Path path = getTokenPath(port);
+        Files.deleteIfExists(path); // a token of a server that was killed
+        try {
+            Files.createDirectories(path.getParent(),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(OWNER_ONLY_DIR)));
+            Files.createFile(path,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(OWNER_ONLY_FILE)));
+        } catch (UnsupportedOperationException e) { // not a POSIX file system, the home directory protects it
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+        Files.write(path, newToken.getBytes(StandardCharsets.UTF_8));
+        return newToken;
+    }
+
+    /**
+     * Proves to a client that the server knows the token: a MAC of the client's challenge keyed by the token.
+     *
+     * @param token     the token of the server.
+     * @param challenge the random bytes the client sent.
+     * @return the proof, which the client computes too and compares.
+     */
+    static byte[] proof(byte[] token, byte[] challenge) {
+        try {
+            Mac mac = Mac.getInstance(PROOF_ALGORITHM);
+            mac.init(new SecretKeySpec(token, PROOF_ALGORITHM));
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // every Java platform supports HmacSHA256
+        }
+    }
+
+    /**
+     * Runs the verifier on a small source many times, so the first requests already run compiled code.
+     */
+    static void warmUp() {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            Sjavac.verifySource(WARM_UP_SOURCE, Diagnostics.FAIL_FAST);
+        }
+    }
+
+    /**
+     * Accepts connections until a STOP request arrives, serving each connection on its own thread.
+     */
+    void serve() throws IOException {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket connection;
+                try {
+                    connection = serverSocket.accept();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) {
+                        break; // stopped
+                    }
+                    throw e;
+                }
+                try {
+                    workers.execute(() -> handle(connection));
+                } catch (RejectedExecutionException e) { // the client verifies the file itself
+                    connection.close();
+                }
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Answers all the requests of one connection.
+     *
+     * @param connection the client connection.
+     */
+    private void handle(Socket connection) {
+        try (Socket socket = connection;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            try {
+                in.readFully(challenge);
+            } catch (EOFException e) {
+                return; // not a client
+            }
+            out.write(proof(token, challenge));
+            out.flush();
+            while (true) {
+                byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException e) {
+                    return; // the client closed the connection
+                }
+                int maxErrors = in.readInt();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD) { // the rest of the connection can't be read
+                    writeResult(out, error(INVALID_LENGTH + length), false);
+                    out.flush();
+                    return;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (kind == STOP) {
+                    boolean authorized = MessageDigest.isEqual(payload, token);
+                    writeResult(out, authorized ? new Sjavac.Result(Sjavac.VALID, null, Collections.emptyList())
+                            : error(NOT_AUTHORIZED), false);
+                    out.flush();
+                    if (authorized) {
+                        serverSocket.close();
+                    }
+                    return;
+                }
+                String text = new String(payload, StandardCharsets.UTF_8);
+                Sjavac.Result result = monitor == null ? verify(kind, text, maxErrors) :
+                        monitor.record(String.valueOf((char) kind), () -> verify(kind, text, maxErrors));
+                writeResult(out, result, maxErrors > Diagnostics.FAIL_FAST);
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e);
+        }
+    }
+
+    /**
+     * Answers a verification request.
+     *
+     * @param kind      kind of the request.
+     * @param text      the request's payload.
+     * @param maxErrors maximal number of errors to report.
+     * @return result of the verification.
+     */
+    private Sjavac.Result verify(byte kind, String text, int maxErrors) {
+        if (kind == VERIFY_SOURCE) {
+            return Sjavac.verifySource(text, maxErrors);
+        } else if (kind == VERIFY_EDIT) {
+            return verifyEdit(text, maxErrors);
+        }
+        return error(UNKNOWN_REQUEST + kind);
+    }
+
+    /**
+     * Creates the result of a request the server can't answer.
+     *
+     * @param message the reason.
+     * @return the result, with code 2.
+     */
+    private static Sjavac.Result error(String message) {
+        return new Sjavac.Result(Sjavac.EXCEPTION, message, Collections.emptyList());
+    }
+
+    /**
+     * Verifies the current version of an edited file.
+     *
+     * @param text      the file's path, a line break and its source.
+     * @param maxErrors maximal number of errors to report.
+     * @return result of the verification.
+     */
+    private Sjavac.Result verifyEdit(String text, int maxErrors) {
+        int pathEnd = text.indexOf(PATH_END);
+        if (pathEnd == -1) {
+            return error(UNKNOWN_REQUEST + VERIFY_EDIT);
+        }
+        IncrementalVerifier verifier = editedFiles.computeIfAbsent(text.substring(0, pathEnd),
+                path -> new IncrementalVerifier());
+        return verifier.verify(text.substring(pathEnd + 1), maxErrors);
+    }
+
+    /**
+     * Writes a response.
+     *
+     * @param out             connection output.
+     * @param result          result of the verification.
+     * @param diagnosticsMode true to send every error with its line.
+     */
+    private static void writeResult(DataOutputStream out, Sjavac.Result result, boolean diagnosticsMode)
+            throws IOException {
+        out.writeUTF(result.getCode());
+        String report = result.getReport(diagnosticsMode);
+        if (report == null) {
+            out.writeInt(NO_MESSAGE);
+        } else {
+            byte[] message = report.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(message.length);
+            out.write(message);
+        }
+    }
+
+    /**
+     * Runs the daemon until it is stopped.
+     *
+     * @param port  localhost port to listen on.
+     * @param stats true to record the stats of the requests.
+     */
+    static void run(int port, boolean stats) {
+        try {
+            VerifierServer server = new VerifierServer(port, stats ? StatsMonitor.register() : null);
+            try {
+                warmUp();
+                System.err.println("Sjavac server listening on localhost:" + port);
+                server.serve();
+            } finally {
+                Files.deleteIfExists(getTokenPath(port));
+            }
+        } catch (IOException | JMException e) {
+            System.out.println(Sjavac.EXCEPTION);
+            System.err.println(e.getMessage());
+        }
+    }
+}
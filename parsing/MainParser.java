@@ -1,7 +1,10 @@
 package parsing;
 
+import scope.Diagnostics;
 import scope.Method;
 import scope.Scope;
+import scope.Stats;
+import scope.Tokens;
 import scope.ConditionsException;
 import scope.ScopeException;
 import scope.MethodException;
@@ -9,10 +12,11 @@ import scope.Variable;
 import scope.AssignException;
 import scope.VariableException;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -20,24 +24,6 @@ import java.util.regex.Pattern;
  */
 
 public class MainParser {
-    public static final String BOOLEANS = "boolean|double|int";
-    public static final String VAR_NAME = " ?(?!" + BOOLEANS + "|char|String|void|final|if|while)" +
-            "[a-zA-Z]+\\w*|_\\w+";
-
-    public static final Pattern VAR_ASSIGN =
-            Pattern.compile("(" + VAR_NAME + ")\\s*=\\s*([^;,]+)\\s*(;|,)?");
-    public static final Pattern CONDITION_PATTERN = Pattern.compile("(if|while)\\s*\\((.+)\\)\\s*\\{?");
-    public static final Pattern VAR_NAME_PATTERN = Pattern.compile(VAR_NAME);
-    public static final Pattern METHOD_CALL_PATTERN =
-            Pattern.compile("([a-zA-Z]+\\w*)\\s*\\((.*)\\)\\s*;");
-    public static final Pattern VAR_DECL_PATTERN =
-            Pattern.compile("(final\\s)?\\s*(" + BOOLEANS + "|char" + "|String)\\s+([^;]+);?");
-
-    public static final String CONDITION_DEL = "(\\|\\|)|(&&)";
-    public static final String ARGUMENT_DEL = "\\s*,\\s*";
-    public static final String VALID_LINES = "\\s*return\\s*;|void\\s+([a-zA-Z]+\\w*)\\s*\\((.*)\\)\\s*|}";
-    public static final String RETURN = "\\s*return\\s*;";
-
     private static final String BOOLEAN_TYPE = "boolean";
     private static final String INT_TYPE = "int";
     private static final String DOUBLE_TYPE = "double";
@@ -46,6 +32,21 @@ public class MainParser {
     private static final String DEFAULT_STRING = "\"\"";
     private static final String CHAR_TYPE = "char";
     private static final String DEFAULT_CHAR = "\' \'";
+    private static final String[] DECLARATION_TYPES = {BOOLEAN_TYPE, DOUBLE_TYPE, INT_TYPE, CHAR_TYPE, STRING_TYPE};
+    private static final String FINAL = "final";
+    private static final String IF = "if";
+    private static final String WHILE = "while";
+    private static final String VOID = "void";
+    private static final String RETURN_KEYWORD = "return";
+    private static final String BLOCK_END = "}";
+    private static final char ASSIGN = '=';
+    private static final char UNDERSCORE = '_';
+    private static final char END = ';';
+    private static final char COMMA = ',';
+    private static final char SPACE = ' ';
+    private static final char OPEN_BRACKET = '(';
+    private static final char CLOSE_BRACKET = ')';
+    private static final int NO_MATCH = -1;
 
     /**
      * Parses the file.
@@ -54,9 +55,145 @@ public class MainParser {
      */
     public static void mainParse(Scope scope) throws VariableException, ScopeException, ParseException {
         parseLines(scope);
+        resolveSignatures(scope);
         parseMethod(scope);
     }
 
+    /**
+     * Sets the arguments of every method of the scope once, before any of their bodies is parsed.
+     * A body depends on the methods it calls only through their signatures, so each body is then parsed once
+     * (in the order of declaration, which is the order of the errors) and a call only looks its method up.
+     *
+     * @param scope current scope.
+     */
+    private static void resolveSignatures(Scope scope) {
+        for (Method method : scope.getMethodScopes()) {
+            resolveArgs(method);
+        }
+    }
+
+    /**
+     * Parses the file, verifying the bodies of its methods in parallel once its global lines are parsed.
+     * The errors are the same, and in the same order, as with mainParse.
+     * Methods with invalid arguments are set by their first caller, so such a file is parsed sequentially.
+     *
+     * @param scope global scope.
+     * @param pool  the pool the method bodies are verified in (the calling thread waits for them).
+     */
+    public static void mainParseParallel(Scope scope, ForkJoinPool pool) throws VariableException, ScopeException,
+            ParseException {
+        parseLines(scope);
+        // all arguments are set first, so no method changes another one while they are parsed
+        resolveSignatures(scope);
+        Method[] methods = scope.getMethodScopes().toArray(new Method[0]);
+        for (Method method : methods) {
+            if (method.getArgsError() != null) {
+                parseMethod(scope);
+                return;
+            }
+        }
+        MethodResult[] results = new MethodResult[methods.length];
+        pool.invoke(new MethodTask(methods, results, new AtomicInteger(methods.length), 0, methods.length));
+        for (MethodResult result : results) { // stops at the first method that stopped the verification
+            Throwable stop = scope.getDiagnostics().merge(result.diagnostics);
+            if (stop != null) {
+                throwError(stop);
+            }
+            if (result.crash != null) {
+                throw result.crash;
+            }
+        }
+    }
+
+    /**
+     * Throws an error reported while parsing.
+     *
+     * @param error a VariableException, ScopeException or ParseException.
+     */
+    private static void throwError(Throwable error) throws VariableException, ScopeException, ParseException {
+        if (error instanceof VariableException) {
+            throw (VariableException) error;
+        }
+        if (error instanceof ScopeException) {
+            throw (ScopeException) error;
+        }
+        throw (ParseException) error;
+    }
+
+    /**
+     * The errors of a method parsed on its own, and the runtime exception that ended it (if any).
+     */
+    private static class MethodResult {
+        private final Diagnostics diagnostics;
+        private RuntimeException crash;
+
+        MethodResult(Diagnostics diagnostics) {
+            this.diagnostics = diagnostics;
+        }
+    }
+
+    /**
+     * A scope whose lines are being parsed, with the line it was opened at.
+     */
+    private static class Block {
+        private final Scope scope;
+        private final int header; // the condition's line in the block around it
+        private int next;
+
+        Block(Scope scope, int header) {
+            this.scope = scope;
+            this.header = header;
+            this.next = scope.getFirstLine();
+        }
+    }
+
+    /**
+     * Parses a range of methods, each with its own collector of errors, splitting the range in halves
+     * so idle workers can steal work.
+     */
+    private static class MethodTask extends RecursiveAction {
+        private final Method[] methods;
+        private final MethodResult[] results;
+        private final AtomicInteger firstStopped; // methods after it are never merged
+        private final int start;
+        private final int end;
+
+        MethodTask(Method[] methods, MethodResult[] results, AtomicInteger firstStopped, int start, int end) {
+            this.methods = methods;
+            this.results = results;
+            this.firstStopped = firstStopped;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                if (start > firstStopped.get()) {
+                    return;
+                }
+                Method method = methods[start];
+                MethodResult result = new MethodResult(method.getDiagnostics().fork());
+                results[start] = result;
+                method.setDiagnostics(result.diagnostics);
+                try {
+                    parseMethodBody(method);
+                } catch (VariableException | ScopeException | ParseException e) { // the method's errors reached the cap
+                    firstStopped.accumulateAndGet(start, Math::min);
+                } catch (RuntimeException e) {
+                    result.crash = e;
+                    firstStopped.accumulateAndGet(start, Math::min);
+                }
+                return;
+            }
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new MethodTask(methods, results, firstStopped, start, middle),
+                        new MethodTask(methods, results, firstStopped, middle, end));
+            }
+        }
+    }
+
     /**
      * Get the default value for each type
      *
@@ -75,40 +212,355 @@ public class MainParser {
     }
 
     /**
-     * Parses all lines of the file.
+     * Parses all lines of the scope (a nested block is its opening line), parsing the body of a condition
+     * as a scope of its own before the lines after it.
+     * The open conditions are kept on a stack, so any depth of nesting is parsed without recursion.
+     * An invalid line is reported to the scope's diagnostics and parsing goes on with the next line.
+     * Every line spends a step of the file's budget (its tokens spent theirs when they were found).
      *
      * @param scope current scope.
      */
-    private static void parseLines(Scope scope) throws VariableException, ScopeException, ParseException {
-        for (String line : scope.getLines()) {
-            Matcher varMatcher = VAR_ASSIGN.matcher(line);
-            Matcher methodMatcher = METHOD_CALL_PATTERN.matcher(line);
-            Matcher condMatcher = CONDITION_PATTERN.matcher(line);
-            if (VAR_DECL_PATTERN.matcher(line).matches()) {
-                parseVarDec(scope, line);
-            } else if (varMatcher.matches()) {
-                parseVarAssign(scope, true, varMatcher);
-            } else if (condMatcher.matches()) {
-                if (!isCondLegal(scope, condMatcher.group(2).split(CONDITION_DEL))) {
-                    throw new ConditionsException();
+    public static void parseLines(Scope scope) throws VariableException, ScopeException, ParseException {
+        ArrayDeque<Block> open = new ArrayDeque<>(); // the blocks around the current one, innermost first
+        ArrayDeque<Scope> entered = new ArrayDeque<>(1);
+        Block block = new Block(scope, NO_MATCH);
+        while (block != null) {
+            Scope current = block.scope;
+            if (block.next >= current.getEndLine()) {
+                block = closeBlock(open, block, null);
+                continue;
+            }
+            int index = block.next;
+            block.next = current.getNextLine(index);
+            try {
+                parseLine(current, index, entered);
+            } catch (VariableException | ScopeException | ParseException e) {
+                block = closeBlock(open, block, e);
+                continue;
+            }
+            Scope conditionScope = entered.poll();
+            if (conditionScope != null) {
+                conditionScope.enter();
+                open.push(block);
+                block = new Block(conditionScope, index);
+            }
+        }
+    }
+
+    /**
+     * Parses a line of a scope, reporting it if it is invalid.
+     *
+     * @param scope   current scope.
+     * @param index   index of the current line.
+     * @param entered the scope of a condition on the line is added to it, to be parsed next.
+     */
+    private static void parseLine(Scope scope, int index, ArrayDeque<Scope> entered) throws VariableException,
+            ScopeException, ParseException {
+        Tokens tokens = scope.getTokens();
+        String line = scope.getLine(index);
+        scope.getContext().spend(1, scope.getDiagnostics());
+        try {
+            if (!parseStatement(scope, tokens, line, index, entered)) { // the only statement left is a method call
+                MethodCall call = findMethodCall(tokens, index);
+                if (call == null || scope.getParentScope() == null) {
+                    throw new SyntaxException(line);
                 }
-                if (scope.getParentScope() == null) { // condition may only appear inside a method
-                    throw new ConditionsException();
+                parseMethod(scope, call);
+            }
+        } catch (VariableException | ScopeException | ParseException e) {
+            if (scope.getDiagnostics().add(index, e)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Closes a block once its lines were parsed (or an error stopped it), finishing the scope of a condition
+     * the same way mainParse finishes a scope. An error that stops a condition is reported at its opening line,
+     * in the block around it.
+     *
+     * @param open  the blocks around the block, innermost first.
+     * @param block the block.
+     * @param error the error that stopped the block, or null.
+     * @return the block to go on parsing, or null once the outermost block was closed.
+     */
+    private static Block closeBlock(ArrayDeque<Block> open, Block block, Throwable error) throws VariableException,
+            ScopeException, ParseException {
+        while (!open.isEmpty()) {
+            if (error == null) {
+                try {
+                    resolveSignatures(block.scope);
+                    parseMethod(block.scope);
+                } catch (VariableException | ScopeException | ParseException e) {
+                    error = e;
+                }
+            }
+            block.scope.leave();
+            Block outer = open.pop();
+            if (error == null || !outer.scope.getDiagnostics().add(block.header, error)) {
+                return outer;
+            }
+            block = outer;
+        }
+        if (error != null) {
+            throwError(error);
+        }
+        return null;
+    }
+
+    /**
+     * Parses a line according to the kind of its first token, matching only the statement of that kind.
+     * The statements are matched on the line's tokens.
+     *
+     * @param scope   current scope.
+     * @param tokens  tokens of the scope's lines.
+     * @param line    current line.
+     * @param index   index of the current line.
+     * @param entered the scope of a condition on the line is added to it, to be parsed next.
+     * @return true if the line was parsed, false if it is not a statement of its kind.
+     */
+    private static boolean parseStatement(Scope scope, Tokens tokens, String line, int index,
+            ArrayDeque<Scope> entered) throws VariableException, ScopeException, ParseException {
+        int first = tokens.getFirstToken(index);
+        int end = tokens.getEndToken(index);
+        switch (classifyLine(tokens, line, index)) {
+            case DECLARATION:
+                if (matchDeclaration(tokens, index) == NO_MATCH) {
+                    return false;
+                }
+                parseVarDec(scope, tokens, index);
+                return true;
+            case ASSIGNMENT:
+                return parseAssignment(scope, tokens, index);
+            case CONDITION:
+                int close = tokens.matchCondition(index);
+                if (close == NO_MATCH) {
+                    return false;
+                }
+                Scope conditionScope = scope.getConditionScopes().pollFirst();
+                try { // condition may only appear inside a method
+                    if (!scope.getContext().getCondition(line.substring(tokens.getEnd(first + 1), close))
+                            .isLegal(scope) || scope.getParentScope() == null) {
+                        scope.getDiagnostics().report(index, new ConditionsException());
+                    }
+                } catch (VariableException e) { // the condition's body is still verified
+                    scope.getDiagnostics().report(index, e);
+                }
+                if (conditionScope != null) { // null only if the block was reported as invalid
+                    entered.add(conditionScope);
+                }
+                return true;
+            case RETURN:
+                if (end - first != 2 || !tokens.isSymbol(first + 1, END) || tokens.getEnd(first + 1) != line.length()) {
+                    return false;
                 }
-                mainParse(Objects.requireNonNull(scope.getConditionScopes().pollFirst()));
-            } else if (methodMatcher.find()) {
                 if (scope.getParentScope() == null) {
                     throw new SyntaxException(line);
                 }
-                parseMethod(scope, methodMatcher);
-            } else if (!line.matches(VALID_LINES)) {
-                throw new SyntaxException(line);
-            } else if (line.matches(RETURN) && scope.getParentScope() == null) {
-                throw new SyntaxException(line);
+                return true;
+            case METHOD_DECLARATION:
+                return isMethodDeclaration(tokens, line, index);
+            case BLOCK_END:
+                return line.equals(BLOCK_END);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Classifies a line by its first token.
+     *
+     * @param tokens tokens of the line.
+     * @param line   current line.
+     * @param index  index of the current line.
+     * @return the only statement kind (apart from a method call) the line may be.
+     */
+    private static LineKind classifyLine(Tokens tokens, String line, int index) {
+        int first = tokens.getFirstToken(index);
+        int end = tokens.getEndToken(index);
+        if (first == end) {
+            return LineKind.OTHER;
+        }
+        if (tokens.getKind(first) != Tokens.WORD) {
+            return tokens.isSymbol(first, BLOCK_END.charAt(0)) ? LineKind.BLOCK_END : LineKind.OTHER;
+        }
+        int wordEnd = tokens.getEnd(first);
+        if (wordEnd < line.length() && Tokens.isWhitespace(line.charAt(wordEnd))
+                && (tokens.isWord(first, FINAL) || getDeclarationType(tokens, first) != null)) {
+            return LineKind.DECLARATION;
+        }
+        if (tokens.isWord(first, IF) || tokens.isWord(first, WHILE)) {
+            return LineKind.CONDITION;
+        }
+        if (tokens.isWord(first, VOID)) {
+            return LineKind.METHOD_DECLARATION;
+        }
+        if (tokens.isWord(first, RETURN_KEYWORD)) { // "return" is not a reserved variable name
+            return first + 1 < end && tokens.isSymbol(first + 1, ASSIGN) ? LineKind.ASSIGNMENT : LineKind.RETURN;
+        }
+        return Tokens.isLetter(tokens.getFirstChar(first)) || tokens.getFirstChar(first) == UNDERSCORE ?
+                LineKind.ASSIGNMENT : LineKind.OTHER;
+    }
+
+    /**
+     * Statement kinds a line may be, decided by its first token.
+     */
+    private enum LineKind {
+        DECLARATION, ASSIGNMENT, CONDITION, RETURN, METHOD_DECLARATION, BLOCK_END, OTHER
+    }
+
+    /**
+     * Gets the type a token declares.
+     *
+     * @return the type's keyword, or null if the token is not a type.
+     */
+    private static String getDeclarationType(Tokens tokens, int token) {
+        for (String type : DECLARATION_TYPES) {
+            if (tokens.isWord(token, type)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Matches a variable declaration line.
+     *
+     * @param tokens tokens of the line.
+     * @param index  index of the line.
+     * @return index of the type's token, or NO_MATCH if the line is not a declaration.
+     */
+    private static int matchDeclaration(Tokens tokens, int index) {
+        String line = tokens.getLine(index);
+        int type = tokens.getFirstToken(index);
+        int end = tokens.getEndToken(index);
+        if (type == end) {
+            return NO_MATCH;
+        }
+        if (tokens.getStart(type) == 0 && tokens.isWord(type, FINAL) && tokens.getEnd(type) < line.length()
+                && Tokens.isWhitespace(line.charAt(tokens.getEnd(type)))) {
+            type++;
+        }
+        if (type == end || getDeclarationType(tokens, type) == null) {
+            return NO_MATCH;
+        }
+        int typeEnd = tokens.getEnd(type);
+        int bodyEnd = line.charAt(line.length() - 1) == END ? line.length() - 1 : line.length();
+        if (typeEnd >= line.length() || !Tokens.isWhitespace(line.charAt(typeEnd)) || bodyEnd - typeEnd < 2) {
+            return NO_MATCH;
+        }
+        for (int token = type + 1; token < end && tokens.getStart(token) < bodyEnd; token++) {
+            if (tokens.isSymbol(token, END)) {
+                return NO_MATCH;
             }
         }
+        return type;
     }
 
+    /**
+     * Gets the offset of the declared variables in a declaration (after the spaces that follow the type).
+     *
+     * @param tokens tokens of the line.
+     * @param index  index of the line.
+     * @param type   index of the type's token.
+     * @return offset of the first declared variable.
+     */
+    private static int getDeclaredStart(Tokens tokens, int index, int type) {
+        String line = tokens.getLine(index);
+        int start = type + 1 < tokens.getEndToken(index) ? tokens.getStart(type + 1) : line.length();
+        if (start == line.length() || line.charAt(start) == END) { // the variables are the last space
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * Gets the offset after the declared variables in a declaration (at its semicolon).
+     *
+     * @param tokens tokens of the line.
+     * @param index  index of the line.
+     * @param start  offset of the first declared variable.
+     * @return offset after the last declared variable.
+     */
+    private static int getDeclaredEnd(Tokens tokens, int index, int start) {
+        for (int token = tokens.getFirstToken(index); token < tokens.getEndToken(index); token++) {
+            if (tokens.getStart(token) >= start && tokens.isSymbol(token, END)) {
+                return tokens.getStart(token);
+            }
+        }
+        return tokens.getLine(index).length();
+    }
+
+    /**
+     * Checks if a line is a method declaration (its first line, without the bracket).
+     *
+     * @param tokens tokens of the line.
+     * @param line   current line.
+     * @param index  index of the current line.
+     * @return true if the line is a method declaration.
+     */
+    private static boolean isMethodDeclaration(Tokens tokens, String line, int index) {
+        int first = tokens.getFirstToken(index);
+        int end = tokens.getEndToken(index);
+        if (end - first < 4 || tokens.getStart(first) != 0 || tokens.getStart(first + 1) == tokens.getEnd(first)
+                || tokens.getKind(first + 1) != Tokens.WORD || !Tokens.isLetter(tokens.getFirstChar(first + 1))
+                || !tokens.isSymbol(first + 2, OPEN_BRACKET) || !tokens.isSymbol(end - 1, CLOSE_BRACKET)) {
+            return false;
+        }
+        return !tokens.hasLineTerminator(index, tokens.getEnd(first + 2), tokens.getStart(end - 1));
+    }
+
+    /**
+     * Checks if a token is a variable name.
+     */
+    private static boolean isVarName(Tokens tokens, int token) {
+        if (tokens.getKind(token) != Tokens.WORD) {
+            return false;
+        }
+        char first = tokens.getFirstChar(token);
+        return first == UNDERSCORE ? tokens.getEnd(token) - tokens.getStart(token) >= 2 :
+                Tokens.isLetter(first) && !tokens.hasReservedPrefix(token);
+    }
+
+    /**
+     * Splits arguments at commas and the spaces around them.
+     *
+     * @param arguments the arguments.
+     * @return the arguments (without trailing empty ones).
+     */
+    private static String[] splitArguments(String arguments) {
+        ArrayList<String> parts = new ArrayList<>();
+        int partStart = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            if (arguments.charAt(i) == COMMA) {
+                int partEnd = i;
+                while (partEnd > partStart && Tokens.isWhitespace(arguments.charAt(partEnd - 1))) {
+                    partEnd--;
+                }
+                parts.add(arguments.substring(partStart, partEnd));
+                while (i + 1 < arguments.length() && Tokens.isWhitespace(arguments.charAt(i + 1))) {
+                    i++;
+                }
+                partStart = i + 1;
+            }
+        }
+        if (parts.isEmpty()) {
+            return new String[]{arguments};
+        }
+        parts.add(arguments.substring(partStart));
+        return withoutTrailingEmpty(parts);
+    }
+
+    /**
+     * Drops the empty strings at the end of split parts.
+     */
+    private static String[] withoutTrailingEmpty(ArrayList<String> parts) {
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return parts.subList(0, size).toArray(new String[0]);
+    }
 
     /**
      * Parses method.
@@ -117,92 +569,219 @@ public class MainParser {
      */
     private static void parseMethod(Scope scope) throws VariableException, ScopeException, ParseException {
         for (Method temp : scope.getMethodScopes()) {
-            setArgs(temp);
-            mainParse(temp);
+            parseMethodBody(temp);
         }
     }
 
     /**
-     * sets arguments of method.
+     * Parses the arguments and the body of a method, once the lines of its parent were parsed.
+     * An invalid method is reported to its diagnostics, at its signature.
+     *
+     * @param method current method.
+     */
+    public static void parseMethodBody(Method method) throws VariableException, ScopeException, ParseException {
+        try {
+            setArgs(method);
+            mainParse(method);
+        } catch (VariableException | ScopeException | ParseException e) {
+            if (method.getDiagnostics().add(method.getHeaderLine(), e)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Checks if the arguments in a method signature are valid, without setting them.
+     *
+     * @param methodArgs the arguments, as written between the signature's brackets.
+     * @return true if setting the arguments of a method with this signature succeeds.
+     */
+    public static boolean hasValidArgs(String methodArgs) {
+        Scope argsScope = new Scope();
+        try {
+            for (String argument : splitArguments(methodArgs)) {
+                if (argument.length() != 0) {
+                    Tokens argTokens = Tokens.lex(argument.trim());
+                    int type = matchDeclaration(argTokens, 0);
+                    if (type == NO_MATCH) {
+                        return false;
+                    }
+                    String synthetic = argument + "=" + getDefaultValueByType(argTokens.getText(type));
+                    parseVarDec(argsScope, Tokens.lex(synthetic), 0);
+                }
+            }
+        } catch (VariableException | SyntaxException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * sets arguments of method (they are set once, a call after that only gets the error of setting them).
      *
      * @param method current method.
      */
     private static void setArgs(Method method) throws VariableException, SyntaxException {
-        if (method.getArgs().isEmpty()) {
-            for (String argument : method.getMethodArgs().split(ARGUMENT_DEL)) {
+        resolveArgs(method);
+        Throwable error = method.takeArgsError();
+        if (error instanceof VariableException) {
+            throw (VariableException) error;
+        }
+        if (error != null) {
+            throw (SyntaxException) error;
+        }
+    }
+
+    /**
+     * Sets the arguments of a method, unless they were set before. An error is kept by the method for the
+     * callers (and the body) that need the arguments.
+     *
+     * @param method current method.
+     */
+    private static void resolveArgs(Method method) {
+        if (method.isArgsResolved()) {
+            return;
+        }
+        try {
+            for (String argument : splitArguments(method.getMethodArgs())) {
                 if (argument.length() != 0) {
-                    Matcher varDecMatch = VAR_DECL_PATTERN.matcher(argument.trim());
-                    if (!varDecMatch.matches()) {
+                    Tokens argTokens = Tokens.lex(argument.trim());
+                    int type = matchDeclaration(argTokens, 0);
+                    if (type == NO_MATCH) {
                         throw new AssignException(argument);
                     } else {
-                        String varType = varDecMatch.group(2).trim();
-                        if (method.addArg(new Variable(varType, getDefaultValueByType(varType),
-                                varDecMatch.group(3).trim(), false))) {
-                            parseVarDec(method, argument + "=" + getDefaultValueByType(varType));
+                        String varType = argTokens.getText(type);
+                        int start = getDeclaredStart(argTokens, 0, type);
+                        String varName = argTokens.getLine(0).substring(start,
+                                getDeclaredEnd(argTokens, 0, start)).trim();
+                        if (method.addArg(new Variable(varType, getDefaultValueByType(varType), varName, false))) {
+                            parseVarDec(method, Tokens.lex(argument + "=" + getDefaultValueByType(varType)), 0);
                         }
                     }
                 }
             }
+        } catch (VariableException | SyntaxException e) {
+            method.setArgsResolved(e);
+            return;
         }
+        method.setArgsResolved(null);
     }
 
     /**
-     * Checks if condition is legal.
+     * Parses variable declaration.
+     * The line (or the part of it the declaration starts at) is a declaration, so only its variables are
+     * matched: they are split at commas, and every one is a name or an assignment.
      *
-     * @param scope current scope.
-     * @param cond  current condition.
-     * @return true if condition id legal.
-     */
-    private static boolean isCondLegal(Scope scope, String[] cond) throws VariableException {
-        for (String arg : cond) {
-            Variable var = scope.getVarFromName(arg.trim());
-            if (var != null && var.getValue() != null && scope.getVarFromName(arg.trim()).getType()
-                    .matches(BOOLEANS)) {
-                continue;
-            }
-            if (var != null && var.getValue() != null && !scope.getVarFromName(arg.trim()).getType()
-                    .matches(BOOLEANS)) {
-                return false;
-            }
-            if (var != null && var.getValue() == null) {
-                return false;
+     * @param scope  current scope.
+     * @param tokens tokens of the line.
+     * @param index  index of the line.
+     */
+    private static void parseVarDec(Scope scope, Tokens tokens, int index) throws VariableException,
+            SyntaxException {
+        String line = tokens.getLine(index);
+        int type = tokens.getFirstToken(index);
+        while (tokens.getKind(type) == Tokens.CONTROL) { // before the declaration
+            type++;
+        }
+        boolean isConstant = tokens.isWord(type, FINAL);
+        if (isConstant) {
+            type++;
+        }
+        String varType = tokens.getText(type);
+        int start = getDeclaredStart(tokens, index, type);
+        int end = getDeclaredEnd(tokens, index, start);
+        while (end > start && line.charAt(end - 1) == COMMA) { // trailing empty variables are dropped
+            end--;
+        }
+        int token = type + 1;
+        while (token < tokens.getEndToken(index) && tokens.getStart(token) < start) {
+            token++;
+        }
+        int varStart = start;
+        while (varStart < end) {
+            int first = token;
+            while (token < tokens.getEndToken(index) && tokens.getStart(token) < end
+                    && !tokens.isSymbol(token, COMMA)) {
+                token++;
             }
+            int varEnd = token < tokens.getEndToken(index) && tokens.getStart(token) < end ?
+                    tokens.getStart(token) : end;
+            parseDeclaredVar(scope, tokens, first, token, varType, isConstant, line, line.substring(varStart, varEnd));
+            varStart = varEnd + 1;
+            token++;
+        }
+    }
 
-            boolean isABooleanArgument = arg.trim().matches(Variable.BOOLEAN_PATTERN);
-            boolean isAValidVariable = arg.trim().matches(VAR_NAME);
-            if (!isABooleanArgument && !isAValidVariable) {
-                return false;
+    /**
+     * Parses a variable of a declaration.
+     *
+     * @param scope      current scope.
+     * @param tokens     tokens of the line.
+     * @param first      index of the variable's first token.
+     * @param end        index after the variable's last token.
+     * @param varType    declared type.
+     * @param isConstant true if the declaration is final.
+     * @param line       the declaration's line.
+     * @param var        the variable, as written.
+     */
+    private static void parseDeclaredVar(Scope scope, Tokens tokens, int first, int end, String varType,
+                                         boolean isConstant, String line, String var)
+            throws VariableException, SyntaxException {
+        while (first < end && tokens.getKind(first) == Tokens.CONTROL) { // trimmed, as whitespace is
+            first++;
+        }
+        while (end > first && tokens.getKind(end - 1) == Tokens.CONTROL) {
+            end--;
+        }
+        if (end - first == 1 && isVarName(tokens, first)) {
+            if (isConstant) {
+                throw new AssignException(var);
             }
+            scope.addVar(new Variable(varType, null, tokens.getText(first), false));
+        } else if (end - first >= 3 && isVarName(tokens, first) && tokens.isSymbol(first + 1, ASSIGN)) {
+            String varName = tokens.getText(first);
+            scope.addVar(new Variable(varType, null, varName, false));
+            parseVarAssign(scope, isConstant, varName, line.substring(tokens.getStart(first + 2),
+                    tokens.getEnd(end - 1)));
+        } else {
+            throw new SyntaxException(line);
         }
-        return true;
     }
 
     /**
-     * Parses variable declaration.
+     * Parses an assignment line, as VAR_ASSIGN.
      *
-     * @param scope current scope.
-     * @param line  current line.
-     */
-    private static void parseVarDec(Scope scope, String line) throws VariableException, SyntaxException {
-        Matcher varDeclMatcher = VAR_DECL_PATTERN.matcher(line);
-        varDeclMatcher.find();
-        for (String var : varDeclMatcher.group(3).split(",")) {
-            Matcher varAssignMatcher = VAR_ASSIGN.matcher(var.trim());
-            Matcher varWithoutAssignment = VAR_NAME_PATTERN.matcher(var.trim());
-            if (varWithoutAssignment.matches()) {
-                if (varDeclMatcher.group(1) != null) {
-                    throw new AssignException(var);
-                }
-                scope.addVar(new Variable(varDeclMatcher.group(2).trim(), null,
-                        varWithoutAssignment.group(0).trim(), false));
-            } else if (varAssignMatcher.matches()) {
-                scope.addVar(new Variable(varDeclMatcher.group(2).trim(), null,
-                        varAssignMatcher.group(1).trim(), false));
-                parseVarAssign(scope, varDeclMatcher.group(1) != null, varAssignMatcher);
-            } else {
-                throw new SyntaxException(line);
+     * @param scope  current scope.
+     * @param tokens tokens of the line.
+     * @param index  index of the line.
+     * @return false if the line is not an assignment.
+     */
+    private static boolean parseAssignment(Scope scope, Tokens tokens, int index) throws VariableException {
+        String line = tokens.getLine(index);
+        int name = tokens.getFirstToken(index);
+        int end = tokens.getEndToken(index);
+        if (end - name < 2 || !tokens.isSymbol(name + 1, ASSIGN)) {
+            return false;
+        }
+        int nameStart = tokens.getStart(name);
+        if (nameStart == 0 ? !isVarName(tokens, name) : nameStart != 1 || line.charAt(0) != SPACE
+                || !Tokens.isLetter(tokens.getFirstChar(name)) || tokens.hasReservedPrefix(name)) {
+            return false;
+        }
+        char last = line.charAt(line.length() - 1);
+        int valueEnd = last == END || last == COMMA ? line.length() - 1 : line.length();
+        if (valueEnd <= tokens.getEnd(name + 1)) {
+            return false;
+        }
+        for (int token = name + 2; token < end && tokens.getStart(token) < valueEnd; token++) {
+            if (tokens.isSymbol(token, END) || tokens.isSymbol(token, COMMA)) {
+                return false;
             }
         }
+        int valueStart = name + 2 < end && tokens.getStart(name + 2) < valueEnd ? tokens.getStart(name + 2) :
+                valueEnd - 1;
+        parseVarAssign(scope, true, line.substring(0, tokens.getEnd(name)), line.substring(valueStart, valueEnd));
+        return true;
     }
 
     /**
@@ -210,22 +789,22 @@ public class MainParser {
      *
      * @param scope      current scope.
      * @param isConstant current line.
-     * @param matcher    variable assignment matcher.
+     * @param varName    name of the assigned variable.
+     * @param value      assigned value.
      */
-    private static void parseVarAssign(Scope scope, boolean isConstant, Matcher matcher)
+    private static void parseVarAssign(Scope scope, boolean isConstant, String varName, String value)
             throws VariableException {
 
-        String varName = matcher.group(1);
-        Variable curVar = scope.getVarFromName(varName);
+        Variable curVar = scope.getVarForAssign(varName);
 
         if (curVar == null || curVar.isConstant()) {
             throw new AssignException(varName);
         }
 
-        if (parseRef(scope, matcher, varName, curVar)) {
+        if (parseRef(scope, value, varName, curVar)) {
             return;
         } else {
-            curVar.setValue(matcher.group(2));
+            curVar.setValue(value);
         }
         if (isConstant) {
             curVar.setConstant(true);
@@ -236,81 +815,138 @@ public class MainParser {
      * Checks if an assigned value is another variable.
      *
      * @param scope   current scope.
-     * @param matcher variable assignment matcher.
+     * @param value   assigned value.
      * @param curVar  current variable.
      */
-    private static boolean parseRef(Scope scope, Matcher matcher, String varName, Variable curVar) throws
+    private static boolean parseRef(Scope scope, String value, String varName, Variable curVar) throws
             VariableException {
-        String newVarName = matcher.group(2);
-        Variable refVar = scope.getVarFromName(newVarName);
+        Variable refVar = scope.getVarFromName(value);
         if (refVar != null) {
-            String refType = refVar.getType();
-            String curType = curVar.getType();
-            boolean isValidBoolean =
-                    (curType.equals(BOOLEAN_TYPE) && (refType.equals(BOOLEAN_TYPE) ||
-                            refType.equals(INT_TYPE) || refType.equals(DOUBLE_TYPE)));
-            boolean isValidDouble =
-                    (curType.equals(DOUBLE_TYPE) && (refType.equals(INT_TYPE) ||
-                            refType.equals(DOUBLE_TYPE)));
-            if (!refVar.getType().equals(curType) && !isValidBoolean && !isValidDouble) {
+            if (!curVar.getType().isAssignableFrom(refVar.getType()) || !refVar.isAssigned()) {
                 throw new AssignException(varName);
-            } else {
-                if (refVar.getValue() == null) {
-                    throw new AssignException(varName);
-                } else {
-                    curVar.setValue(refVar.getValue());
-                }
-                return true;
             }
+            curVar.setValue(refVar);
+            return true;
         }
         return false;
     }
 
+    /**
+     * A method call: the called name and the arguments, as written between the brackets.
+     */
+    private static class MethodCall {
+        private final String name;
+        private final String args;
+
+        MethodCall(String name, String args) {
+            this.name = name;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Finds the first method call in a line.
+     * A call is a name followed by a round bracket, and ends at the last closing bracket followed by a semicolon,
+     * with no line terminator between the brackets - so after a failed name, the names before the next line
+     * terminator fail too and are skipped.
+     *
+     * @param tokens tokens of the line.
+     * @param index  index of the line.
+     * @return the call, or null if the line has no call.
+     */
+    private static MethodCall findMethodCall(Tokens tokens, int index) {
+        String line = tokens.getLine(index);
+        int end = tokens.getEndToken(index);
+        int token = tokens.getFirstToken(index);
+        while (token + 1 < end) {
+            int nameStart = getNameStart(tokens, token);
+            if (nameStart == NO_MATCH || !tokens.isSymbol(token + 1, OPEN_BRACKET)) {
+                token++;
+                continue;
+            }
+            int open = tokens.getStart(token + 1);
+            int segmentEnd = open + 1;
+            while (segmentEnd < line.length() && !Tokens.isLineTerminator(line.charAt(segmentEnd))) {
+                segmentEnd++;
+            }
+            int next = token + 2;
+            while (next < end && tokens.getStart(next) < segmentEnd) {
+                next++;
+            }
+            for (int close = next - 1; close > token + 1; close--) {
+                if (tokens.isSymbol(close, CLOSE_BRACKET) && close + 1 < end && tokens.isSymbol(close + 1, END)) {
+                    return new MethodCall(line.substring(nameStart, tokens.getEnd(token)),
+                            line.substring(open + 1, tokens.getStart(close)));
+                }
+            }
+            token = next;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the offset a method's name starts at in a word (its first letter).
+     *
+     * @return the offset, or NO_MATCH if the token is not a word with a letter.
+     */
+    private static int getNameStart(Tokens tokens, int token) {
+        if (tokens.getKind(token) != Tokens.WORD) {
+            return NO_MATCH;
+        }
+        String word = tokens.getText(token);
+        for (int i = 0; i < word.length(); i++) {
+            if (Tokens.isLetter(word.charAt(i))) {
+                return tokens.getStart(token) + i;
+            }
+        }
+        return NO_MATCH;
+    }
+
     /**
      * Parses current method.
      *
-     * @param scope         current scope.
-     * @param methodMatcher matcher for method.
+     * @param scope current scope.
+     * @param call  the method call.
      */
-    private static void parseMethod(Scope scope, Matcher methodMatcher) throws ScopeException,
+    private static void parseMethod(Scope scope, MethodCall call) throws ScopeException,
             VariableException, ParseException {
         String[] methodArgs = new String[0];
-        if (!methodMatcher.group(2).isEmpty()) {
-            methodArgs = methodMatcher.group(2).trim().split(ARGUMENT_DEL);
+        if (!call.args.isEmpty()) {
+            methodArgs = splitArguments(call.args.trim());
         }
-        findMethod(scope, methodMatcher, methodArgs);
+        findMethod(scope, call.name, methodArgs);
     }
 
 
     /**
      * Finds the method we currently call.
      *
-     * @param scope         current scope.
-     * @param methodMatcher matcher for method.
-     * @param args          arguments of current method.
+     * @param scope      current scope.
+     * @param methodName name of the called method.
+     * @param args       arguments of current method.
      */
-    private static void findMethod(Scope scope, Matcher methodMatcher, String[] args)
+    private static void findMethod(Scope scope, String methodName, String[] args)
             throws MethodException, VariableException, ParseException {
         Method foundedMethod = null;
         Scope scopeCopy = scope;
-        while (scopeCopy != null) {
-            for (Method temp : scopeCopy.getMethodScopes()) {
-                if (!temp.getMethodName().equals(methodMatcher.group(1))) {
-                    continue;
-                }
+        while (scopeCopy != null) { // a method declared in an outer scope wins
+            Method temp = scopeCopy.getMethodFromName(methodName);
+            if (temp != null) {
                 foundedMethod = temp;
             }
             scopeCopy = scopeCopy.getParentScope();
         }
         if (foundedMethod == null) {
-            throw new MethodException(methodMatcher.group(1));
+            throw new MethodException(methodName);
         }
+        scope.getContext().getStats().count(Stats.Counter.CALLS);
         setArgs(foundedMethod);
-        scope.getMethodScopes().remove(foundedMethod);
+        scope.removeMethodScope(foundedMethod);
         ArrayList<Variable> signatureArgs = foundedMethod.getArgs();
         parseArgs(signatureArgs, args, scope);
     }
 
+
     /**
      * Parses current method.
      *
@@ -325,11 +961,13 @@ public class MainParser {
             throw new NumArgsException();
         }
         for (int i = 0; i < callArgs.length; i++) {
-            Variable checkedVarName = scope.getVarFromName(callArgs[i]);
-            if (checkedVarName != null) {
-                signatureArgs.get(i).setValue(checkedVarName.getValue());
-            } else {
-                signatureArgs.get(i).setValue(callArgs[i]);
+            // the value is only checked, the signature's arguments are shared by all the callers
+            Variable checkedVar = scope.getVarFromName(callArgs[i]);
+            Variable signatureArg = signatureArgs.get(i);
+            boolean isValid = checkedVar != null ? !checkedVar.isAssigned() || checkedVar.hasValueOf(
+                    signatureArg.getType()) : signatureArg.getType().isValue(callArgs[i]);
+            if (!isValid) {
+                throw new AssignException(signatureArg.getName());
             }
         }
     }
@@ -5,6 +5,6 @@ package parsing;
  */
 public class ParseException extends Throwable {
 	public ParseException(String s) {
-		super(s);
+		super(s, null, false, false);
 	}
 }
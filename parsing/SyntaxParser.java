@@ -1,128 +1,432 @@
 package parsing;
 
+import scope.BudgetException;
+import scope.Diagnostics;
+import scope.FileContext;
+import scope.Stats;
+import scope.Tokens;
+
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Iterator;
 
 /**
  * This class is responsible to check if the syntax of the code is valid.
+ * The file is read once - every line is cleaned and checked as soon as it is read.
  */
 public class SyntaxParser {
     private static final char SEMICOLON = ';';
-    private static final String IO_ERROR_CODE = "2";
-    private static final String ONLY_SPACE_LINES = "^(\\s)+$";
-    private static final String LEGAL_COMMENT = "//.*";
+    private static final String LEGAL_COMMENT = "//";
     private static final String EMPTY_STRING = "";
     private static final char ROUND_BRACKET_START = '(';
     private static final char ROUND_BRACKET_END = ')';
     private static final char CURLY_BRACKET_START = '{';
     private static final char CURLY_BRACKET_END = '}';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte SLASH = '/';
+    private static final int MAX_TRIMMED_BYTE = ' ';
+    private static final long MAP_THRESHOLD = 1 << 20; // smaller files are read into a heap buffer
+    private static final int CHARS_PER_STEP = 64; // chars of a read line that cost a step of the budget
+    private static final String FILE_TOO_LARGE = "File too large: ";
+    private static final String NO_SUCH_FILE = "No such file or directory";
+    private static final String ACCESS_DENIED = "Permission denied";
+    private static final String IS_DIRECTORY = "Is a directory";
 
 
     /**
      * Main method that checks if the syntax is valid.
+     * Stops reading at the first invalid line.
+     * @param bufferReader file represented as a BufferedReader.
+     * @return the cleaned lines of the file.
      */
-    public static ArrayList<String> validateSyntax(BufferedReader bufferReader) throws FileNotFoundException,
+    public static ArrayList<String> validateSyntax(BufferedReader bufferReader) throws IOException,
             SyntaxException {
-        ArrayList<String> sourceCodeLines = bufferToArrayList(bufferReader);
-        sourceCodeLines = clean(sourceCodeLines);
-        checkBracketsValidity(sourceCodeLines);
-        return sourceCodeLines;
+        try {
+            return validateSyntax(bufferReader, new Diagnostics(Diagnostics.FAIL_FAST), new FileContext());
+        } catch (BudgetException e) { // not thrown without a budget
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
-     * Converts the bufferReader to an ArrayList.
+     * Checks if the syntax is valid, reporting invalid lines to the given diagnostics.
+     * The source line number of every cleaned line is added to the diagnostics.
+     * Every line read spends a step of the file's budget per CHARS_PER_STEP chars, so a huge line is stopped
+     * before it is cleaned.
      * @param bufferReader file represented as a BufferedReader.
-     * @return file represented as an ArrayList.
+     * @param diagnostics collector of the errors of the file.
+     * @param context stats and budget of the file.
+     * @return the cleaned lines of the file.
+     */
+    public static ArrayList<String> validateSyntax(BufferedReader bufferReader, Diagnostics diagnostics,
+                                                   FileContext context) throws IOException, SyntaxException,
+            BudgetException {
+        context.getStats().startPhase(Stats.Phase.CLEAN); // the lines are read as they are cleaned
+        ArrayList<String> cleanedLines = new ArrayList<>();
+        int curlyBracketCounter = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = bufferReader.readLine()) != null) { // run over whole file, line by line
+            lineNumber++;
+            context.spend(line.length() / CHARS_PER_STEP, diagnostics);
+            line = clean(line);
+            if (!line.equals(EMPTY_STRING)) { // if not empty line
+                curlyBracketCounter += checkLine(line, lineNumber, cleanedLines, diagnostics, context);
+            }
+        }
+        checkBracketsBalance(curlyBracketCounter, cleanedLines, diagnostics, context);
+        return cleanedLines;
+    }
+
+    /**
+     * Checks if the syntax of a file is valid, reading it as bytes (memory mapped for large files).
+     * Comments and blank lines are skipped in the byte buffer, so a String is only created for
+     * the cleaned code lines.
+     * Files in a charset where a byte is not always a whole ASCII char fall back to a reader.
+     * @param path path of the file.
+     * @return the cleaned lines of the file.
      */
-    private static ArrayList<String> bufferToArrayList (BufferedReader bufferReader) {
+    public static ArrayList<String> validateSyntax(Path path) throws IOException, SyntaxException {
         try {
-            String line;
-            ArrayList<String> returnedList = new ArrayList<>();
-            while ((line = bufferReader.readLine()) != null) {
-                returnedList.add(line);
+            return validateSyntax(path, new Diagnostics(Diagnostics.FAIL_FAST), new FileContext());
+        } catch (BudgetException e) { // not thrown without a budget
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks if the syntax of a file is valid, reporting invalid lines to the given diagnostics.
+     * @param path path of the file.
+     * @param diagnostics collector of the errors of the file.
+     * @param context stats and budget of the file.
+     * @return the cleaned lines of the file.
+     */
+    public static ArrayList<String> validateSyntax(Path path, Diagnostics diagnostics, FileContext context)
+            throws IOException, SyntaxException, BudgetException {
+        Charset charset = Charset.defaultCharset();
+        if (!isByteScannable(charset) || getSize(path) > Integer.MAX_VALUE) {
+            try (BufferedReader reader = Files.newBufferedReader(path, charset)) {
+                return validateSyntax(reader, diagnostics, context);
+            } catch (FileSystemException e) {
+                throw withReason(path, e);
             }
-            return returnedList;
+        }
+        context.getStats().startPhase(Stats.Phase.READ);
+        return validateSyntax(readSource(path), diagnostics, context);
+    }
 
-        } catch (IOException e) {
-            System.out.println(IO_ERROR_CODE);
-            return null;
+    /**
+     * Gets the size of a file.
+     * @param path path of the file.
+     * @return size in bytes.
+     * @throws IOException if the file can't be read, with its reason.
+     */
+    public static long getSize(Path path) throws IOException {
+        try {
+            return Files.size(path);
+        } catch (FileSystemException e) {
+            throw withReason(path, e);
         }
     }
 
     /**
-     * cleans file from comments, whitespaces and empty lines.
-     * @param sourceCodeLines file represented as an ArrayList.
-     * @return cleaned file.
+     * Gets the error of reading a file with its reason, "path (reason)", as FileReader reports it.
+     * @param path path of the file.
+     * @param e the error, whose message may be only the path.
+     * @return the error to throw.
      */
-    private static ArrayList<String> clean(ArrayList<String> sourceCodeLines) {
-        ArrayList<String> cleanedLines = new ArrayList<>();
+    private static IOException withReason(Path path, IOException e) {
+        String reason;
+        if (e instanceof NoSuchFileException) {
+            reason = NO_SUCH_FILE;
+        } else if (e instanceof AccessDeniedException) {
+            reason = ACCESS_DENIED;
+        } else if (Files.isDirectory(path)) {
+            reason = IS_DIRECTORY;
+        } else if (e instanceof FileSystemException && ((FileSystemException) e).getReason() != null) {
+            reason = ((FileSystemException) e).getReason();
+        } else {
+            return e;
+        }
+        FileNotFoundException error = new FileNotFoundException(path + " (" + reason + ")");
+        error.initCause(e);
+        return error;
+    }
+
+    /**
+     * Reads a file into a byte buffer, memory mapped for large files.
+     * An entry of an archive (a file of another file system) is read without a channel, which can't map it and
+     * costs more to open than reading a small entry.
+     * @param path path of the file.
+     * @return the file's bytes, from position 0 to the limit.
+     */
+    public static ByteBuffer readSource(Path path) throws IOException {
+        try {
+            return read(path);
+        } catch (IOException e) {
+            throw withReason(path, e);
+        }
+    }
 
-        for (String line : sourceCodeLines) {
-            line = line.replaceAll(ONLY_SPACE_LINES, EMPTY_STRING);
-            // remove all comments from the file
-            line = line.replaceAll(LEGAL_COMMENT, EMPTY_STRING);
-            line = line.trim(); // remove all leading and trailing spaces
-            // if not empty line
-            if (!line.equals(EMPTY_STRING)) {
-                cleanedLines.add(line);
+    /**
+     * Reads a file into a byte buffer.
+     * @param path path of the file.
+     * @return the file's bytes, from position 0 to the limit.
+     */
+    private static ByteBuffer read(Path path) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            if (Files.size(path) > Integer.MAX_VALUE) {
+                throw new IOException(FILE_TOO_LARGE + path);
+            }
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(FILE_TOO_LARGE + path);
+            }
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
             }
+            ByteBuffer source = ByteBuffer.allocate((int) size);
+            while (source.hasRemaining() && channel.read(source) != -1) {
+                continue; // a file that shrinks while it is read ends where it ends
+            }
+            return source.flip();
+        }
+    }
 
+    /**
+     * Checks if the syntax of a file read into a byte buffer (by readSource) is valid.
+     * The buffer itself is not changed.
+     * @param source the file's bytes in the default charset.
+     * @param diagnostics collector of the errors of the file.
+     * @param context stats and budget of the file.
+     * @return the cleaned lines of the file.
+     */
+    public static ArrayList<String> validateSyntax(ByteBuffer source, Diagnostics diagnostics, FileContext context)
+            throws IOException, SyntaxException, BudgetException {
+        Charset charset = Charset.defaultCharset();
+        if (!isByteScannable(charset)) {
+            String text = charset.decode(source.duplicate()).toString();
+            return validateSyntax(new BufferedReader(new StringReader(text)), diagnostics, context);
         }
-        return cleanedLines;
+        return validateSyntax(source.duplicate(), charset, diagnostics, context);
+    }
+
+    /**
+     * Checks if a file in the given charset can be scanned as bytes.
+     * @param charset charset of the file.
+     * @return true if every ASCII char is a single byte that is never part of another char.
+     */
+    public static boolean isByteScannable(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
     }
 
     /**
-     * checks if brackets in the code are valid.
-     * @param sourceCodeLines file represented as an ArrayList.
+     * Checks if the syntax of a file read into a byte buffer is valid.
+     * Every line spends a step of the file's budget per CHARS_PER_STEP bytes, as a line read by a reader does.
+     * @param source the file's bytes.
+     * @param charset charset of the file (one byte per ASCII char).
+     * @param diagnostics collector of the errors of the file.
+     * @param context stats and budget of the file.
+     * @return the cleaned lines of the file.
      */
-    private static void checkBracketsValidity(Iterable<String> sourceCodeLines) throws SyntaxException {
+    private static ArrayList<String> validateSyntax(ByteBuffer source, Charset charset, Diagnostics diagnostics,
+                                                    FileContext context) throws SyntaxException, BudgetException {
+        context.getStats().startPhase(Stats.Phase.CLEAN);
+        ArrayList<String> cleanedLines = new ArrayList<>();
+        byte[] lineBytes = source.hasArray() ? source.array() : new byte[0];
         int curlyBracketCounter = 0;
-        Iterator<String> sourceIter = sourceCodeLines.iterator(); // iterate over iterable source file code
-        String currentLine = EMPTY_STRING;
-        while (sourceIter.hasNext()) { // run over whole file, line by line
-            currentLine = sourceIter.next();
-            char[] lineAsCharArray = currentLine.toCharArray(); // look at line as char array
-
-            int roundBracketCounter = 0;
-            for (int i = 0; i < lineAsCharArray.length; i++) { // check if char is a bracket
-                switch (lineAsCharArray[i]) {
-                    case (ROUND_BRACKET_START):
-                        roundBracketCounter++;
-                        break;
-                    case (ROUND_BRACKET_END):
-                        roundBracketCounter--;
-                        break;
-                    case (CURLY_BRACKET_START): // a curly bracket opening can only be the last char
-                        if (i != lineAsCharArray.length - 1) {
-                            throw new SyntaxException(currentLine);
-                        } else
-                            curlyBracketCounter++;
-                        break;
-                    case (CURLY_BRACKET_END): // a curly bracket must be in a separate line
-                        if (lineAsCharArray.length != 1)
-                            throw new SyntaxException(currentLine);
-                        else
-                            curlyBracketCounter--;
-                        break;
-                    case (SEMICOLON):
-                        if (i != lineAsCharArray.length - 1) // semicolon must be the last char
-                            throw new SyntaxException(currentLine);
-                        break;
+        int lineNumber = 0;
+        int limit = source.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            lineNumber++;
+            int lineEnd = lineStart;
+            int codeEnd = -1;
+            boolean nonAsciiComment = false;
+            while (lineEnd < limit && source.get(lineEnd) != LINE_FEED && source.get(lineEnd) != CARRIAGE_RETURN) {
+                if (codeEnd == -1 && source.get(lineEnd) == SLASH && lineEnd + 1 < limit
+                        && source.get(lineEnd + 1) == SLASH) {
+                    codeEnd = lineEnd; // the rest of the line is a comment
                 }
-                if (roundBracketCounter < 0) {
-                    throw new SyntaxException(currentLine);
+                nonAsciiComment |= codeEnd != -1 && source.get(lineEnd) < 0;
+                lineEnd++;
+            }
+            context.spend((lineEnd - lineStart) / CHARS_PER_STEP, diagnostics);
+            if (nonAsciiComment) { // the comment may end at a line terminator char, cleaned as a string
+                String currentLine = clean(charset.decode(source.duplicate().limit(lineEnd).position(lineStart))
+                        .toString());
+                if (!currentLine.isEmpty()) {
+                    curlyBracketCounter += checkLine(currentLine, lineNumber, cleanedLines, diagnostics, context);
                 }
-            } // check last char validity
-            char lastChar = lineAsCharArray[lineAsCharArray.length - 1];
-            if (roundBracketCounter != 0 || lastChar != CURLY_BRACKET_START && lastChar != SEMICOLON
-                    && lastChar != CURLY_BRACKET_END) {
-                throw new SyntaxException(currentLine);
             }
+            // trim the code part of the line
+            int start = lineStart;
+            int end = codeEnd == -1 ? lineEnd : codeEnd;
+            while (start < end && (source.get(start) & 0xFF) <= MAX_TRIMMED_BYTE) {
+                start++;
+            }
+            while (end > start && (source.get(end - 1) & 0xFF) <= MAX_TRIMMED_BYTE) {
+                end--;
+            }
+            if (start < end && !nonAsciiComment) { // if not empty line
+                String currentLine;
+                if (!source.hasArray()) {
+                    if (lineBytes.length < end - start) {
+                        lineBytes = new byte[Math.max(end - start, lineBytes.length * 2)];
+                    }
+                    source.position(start);
+                    source.get(lineBytes, 0, end - start);
+                    currentLine = new String(lineBytes, 0, end - start, charset);
+                } else {
+                    currentLine = new String(lineBytes, source.arrayOffset() + start, end - start, charset);
+                }
+                curlyBracketCounter += checkLine(currentLine, lineNumber, cleanedLines, diagnostics, context);
+            }
+            // skip the line terminator ("\n", "\r" or "\r\n")
+            if (lineEnd < limit && source.get(lineEnd) == CARRIAGE_RETURN && lineEnd + 1 < limit
+                    && source.get(lineEnd + 1) == LINE_FEED) {
+                lineEnd++;
+            }
+            lineStart = lineEnd + 1;
         }
-        if (curlyBracketCounter != 0)
+        checkBracketsBalance(curlyBracketCounter, cleanedLines, diagnostics, context);
+        return cleanedLines;
+    }
+
+    /**
+     * Checks a cleaned line and adds it to the cleaned lines.
+     * @param line cleaned, non empty line.
+     * @param lineNumber line number in the source file.
+     * @param cleanedLines cleaned lines read so far.
+     * @param diagnostics collector of the errors of the file.
+     * @param context stats of the file.
+     * @return how many curly brackets the line opens (negative if it closes), 0 if it is invalid.
+     */
+    private static int checkLine(String line, int lineNumber, ArrayList<String> cleanedLines,
+                                 Diagnostics diagnostics, FileContext context) throws SyntaxException {
+        diagnostics.addLine(lineNumber);
+        context.getStats().count(Stats.Counter.LINES);
+        cleanedLines.add(line);
+        try {
+            return checkBracketsValidity(line);
+        } catch (SyntaxException e) {
+            diagnostics.report(cleanedLines.size() - 1, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Checks that all curly brackets of the file are closed.
+     * Not checked after an invalid line, since that line's brackets were not counted.
+     * @param curlyBracketCounter number of open curly brackets at the end of the file.
+     * @param cleanedLines cleaned lines of the file.
+     * @param diagnostics collector of the errors of the file.
+     * @param context stats of the file.
+     */
+    private static void checkBracketsBalance(int curlyBracketCounter, ArrayList<String> cleanedLines,
+                                             Diagnostics diagnostics, FileContext context) throws SyntaxException {
+        context.getStats().startPhase(Stats.Phase.BRACKETS);
+        if (curlyBracketCounter != 0 && !diagnostics.hasErrors()) {
+            int lastLine = cleanedLines.size() - 1;
+            String currentLine = lastLine < 0 ? EMPTY_STRING : cleanedLines.get(lastLine);
+            diagnostics.report(lastLine, new SyntaxException(currentLine));
+        }
+    }
+
+    /**
+     * cleans a line from comments and whitespaces.
+     * A comment ends at the end of the line, or at a line terminator char inside it (\u0085, \u2028 or \u2029),
+     * as the //.* pattern this replaces did: the rest of the line is code again.
+     * @param line line of the file.
+     * @return cleaned line (empty if nothing is left).
+     */
+    private static String clean(String line) {
+        // remove all comments from the file
+        int commentStart = line.indexOf(LEGAL_COMMENT);
+        if (commentStart == -1) {
+            return line.trim(); // remove all leading and trailing spaces (and whitespace-only lines)
+        }
+        StringBuilder code = null;
+        int codeStart = 0;
+        while (commentStart != -1) {
+            int commentEnd = commentStart + LEGAL_COMMENT.length();
+            while (commentEnd < line.length() && !Tokens.isLineTerminator(line.charAt(commentEnd))) {
+                commentEnd++;
+            }
+            if (code == null && commentEnd == line.length()) { // the usual case, a comment to the end of the line
+                return line.substring(0, commentStart).trim();
+            }
+            if (code == null) {
+                code = new StringBuilder();
+            }
+            code.append(line, codeStart, commentStart);
+            codeStart = commentEnd;
+            commentStart = line.indexOf(LEGAL_COMMENT, codeStart);
+        }
+        return code.append(line, codeStart, line.length()).toString().trim();
+    }
+
+    /**
+     * checks if brackets in a cleaned line are valid.
+     * @param currentLine cleaned, non empty line.
+     * @return how many curly brackets the line opens (negative if it closes).
+     */
+    private static int checkBracketsValidity(String currentLine) throws SyntaxException {
+        int curlyBracketCounter = 0;
+        int roundBracketCounter = 0;
+        int length = currentLine.length();
+        for (int i = 0; i < length; i++) { // check if char is a bracket
+            switch (currentLine.charAt(i)) {
+                case (ROUND_BRACKET_START):
+                    roundBracketCounter++;
+                    break;
+                case (ROUND_BRACKET_END):
+                    roundBracketCounter--;
+                    break;
+                case (CURLY_BRACKET_START): // a curly bracket opening can only be the last char
+                    if (i != length - 1) {
+                        throw new SyntaxException(currentLine);
+                    } else
+                        curlyBracketCounter++;
+                    break;
+                case (CURLY_BRACKET_END): // a curly bracket must be in a separate line
+                    if (length != 1)
+                        throw new SyntaxException(currentLine);
+                    else
+                        curlyBracketCounter--;
+                    break;
+                case (SEMICOLON):
+                    if (i != length - 1) // semicolon must be the last char
+                        throw new SyntaxException(currentLine);
+                    break;
+            }
+            if (roundBracketCounter < 0) {
+                throw new SyntaxException(currentLine);
+            }
+        } // check last char validity
+        char lastChar = currentLine.charAt(length - 1);
+        if (roundBracketCounter != 0 || lastChar != CURLY_BRACKET_START && lastChar != SEMICOLON
+                && lastChar != CURLY_BRACKET_END) {
             throw new SyntaxException(currentLine);
+        }
+        return curlyBracketCounter;
     }
 }
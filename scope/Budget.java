@@ -0,0 +1,45 @@
+package scope;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the work of verifying one file: a deadline and a number of steps (a step is a token found, a line
+ * parsed, or 64 chars of a line read). Both are checked as the file is read, lexed and parsed.
+ * Verification stops with a BudgetException once either is used up, so a crafted file can't hold a shared
+ * verifier. It is kept in the FileContext of the file, shared by the methods verified in parallel.
+ */
+public class Budget {
+	public static final long UNLIMITED = 0;
+	private static final long NANOS_PER_MILLI = 1000000;
+
+	private final long timeLimit;
+	private final long deadline;
+	private final long maxSteps;
+	private final AtomicLong steps = new AtomicLong();
+
+	/**
+	 * This is the constructor of Budget. The time starts now.
+	 * @param timeLimit maximal time to verify the file, in milliseconds (UNLIMITED for no limit).
+	 * @param maxSteps maximal number of steps (UNLIMITED for no limit).
+	 */
+	public Budget(long timeLimit, long maxSteps) {
+		this.timeLimit = timeLimit;
+		this.deadline = System.nanoTime() + timeLimit * NANOS_PER_MILLI;
+		this.maxSteps = maxSteps;
+	}
+
+	/**
+	 * Spends steps of the budget.
+	 * @param count number of steps.
+	 * @return the error to stop with, or null if the budget is not used up.
+	 */
+	BudgetException spend(int count) {
+		if (maxSteps != UNLIMITED && steps.addAndGet(count) > maxSteps) {
+			return new BudgetException(maxSteps + " steps");
+		}
+		if (timeLimit != UNLIMITED && System.nanoTime() - deadline > 0) {
+			return new BudgetException(timeLimit + " ms");
+		}
+		return null;
+	}
+}
@@ -0,0 +1,11 @@
+package scope;
+
+/**
+ * The budget of verifying a file was used up.
+ * Extends ScopeException.
+ */
+public class BudgetException extends ScopeException {
+	public BudgetException(String limit) {
+		super("Verification budget exceeded: more than " + limit);
+	}
+}
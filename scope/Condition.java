@@ -0,0 +1,123 @@
+package scope;
+
+import java.util.ArrayList;
+
+/**
+ * The condition of an if or a while, split once at its || and && operators.
+ * Every operand is classified when the condition is compiled - a literal, a name, both (true and false could
+ * name variables) or neither - so checking it in a scope only looks its names up. A condition without names
+ * doesn't depend on the scope, so it is checked once, when it is compiled.
+ */
+public class Condition {
+	private static final int INVALID = 0;
+	private static final int LITERAL = 1;
+	private static final int NAME = 2;
+	private static final char OR = '|';
+	private static final char AND = '&';
+	private static final char UNDERSCORE = '_';
+
+	private final String[] operands;
+	private final int[] kinds;
+	private final boolean hasNames;
+	private final boolean constantLegal;
+
+	/**
+	 * This is the constructor of Condition, it compiles the condition.
+	 * @param condition the condition, as written between the brackets.
+	 */
+	public Condition(String condition) {
+		operands = split(condition);
+		kinds = new int[operands.length];
+		boolean names = false;
+		boolean legal = true;
+		for (int i = 0; i < operands.length; i++) {
+			String operand = operands[i].trim();
+			operands[i] = operand;
+			kinds[i] = (Variable.Type.BOOLEAN.isValue(operand) ? LITERAL : INVALID)
+					| (isName(operand) ? NAME : INVALID);
+			names |= (kinds[i] & NAME) != 0;
+			legal &= kinds[i] != INVALID;
+		}
+		hasNames = names;
+		constantLegal = legal;
+	}
+
+	/**
+	 * Checks if the condition is legal in a scope: every operand is a boolean literal, an assigned boolean,
+	 * int or double variable, or a name no variable has.
+	 * @param scope the scope the condition is in.
+	 * @return true if legal.
+	 */
+	public boolean isLegal(Scope scope) throws VariableException {
+		if (!hasNames) {
+			return constantLegal;
+		}
+		for (int i = 0; i < operands.length; i++) {
+			if ((kinds[i] & NAME) != 0) {
+				Variable var = scope.getVarFromName(operands[i]);
+				if (var != null) {
+					if (!var.isAssigned() || !var.getType().isCondition()) {
+						return false;
+					}
+					continue;
+				}
+			}
+			if (kinds[i] == INVALID) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Splits a condition at its || and && operators (dropping the empty parts at its end).
+	 * @param condition the condition.
+	 * @return the parts of the condition.
+	 */
+	private static String[] split(String condition) {
+		ArrayList<String> parts = new ArrayList<>();
+		int partStart = 0;
+		for (int i = 0; i + 1 < condition.length(); i++) {
+			char c = condition.charAt(i);
+			if ((c == OR || c == AND) && condition.charAt(i + 1) == c) {
+				parts.add(condition.substring(partStart, i));
+				partStart = i + 2;
+				i++;
+			}
+		}
+		if (parts.isEmpty()) {
+			return new String[]{condition};
+		}
+		parts.add(condition.substring(partStart));
+		int size = parts.size();
+		while (size > 0 && parts.get(size - 1).isEmpty()) {
+			size--;
+		}
+		return parts.subList(0, size).toArray(new String[0]);
+	}
+
+	/**
+	 * Checks if a trimmed operand is a variable name.
+	 * @param operand the operand.
+	 * @return true if it is a name.
+	 */
+	private static boolean isName(String operand) {
+		if (operand.isEmpty()) {
+			return false;
+		}
+		if (operand.charAt(0) == UNDERSCORE) {
+			if (operand.length() < 2) {
+				return false;
+			}
+		} else if (!Tokens.isLetter(operand.charAt(0))
+				|| Tokens.hasReservedPrefix(operand, 0, operand.length())) {
+			return false;
+		}
+		for (int i = 0; i < operand.length(); i++) {
+			if (!Tokens.isWordChar(operand.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
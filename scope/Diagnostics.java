@@ -0,0 +1,190 @@
+package scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Collects the errors found while verifying one file.
+ * With a cap of one error (fail fast, the default) the first error is thrown as soon as it is reported,
+ * like before. With a higher cap, verification goes on after an error and the error that reaches the
+ * cap is thrown to stop it. The budget of the file (kept in its FileContext) stops it the same way once it is
+ * used up.
+ */
+public class Diagnostics {
+	public static final int FAIL_FAST = 1;
+	private static final int INITIAL_LINES = 64;
+	private static final int UNKNOWN_LINE = 0;
+
+	private final int maxErrors;
+	private final ArrayList<Diagnostic> diagnostics = new ArrayList<>();
+	private final ArrayList<Throwable> errors = new ArrayList<>();
+	private final ArrayList<Integer> errorLines = new ArrayList<>();
+	private final BitSet reportedLines = new BitSet();
+	private int[] lineNumbers = new int[INITIAL_LINES];
+	private int lineCount;
+	private boolean stopped;
+
+	/**
+	 * This is the constructor of Diagnostics.
+	 * @param maxErrors maximal number of errors to collect (at least one).
+	 */
+	public Diagnostics(int maxErrors) {
+		this.maxErrors = Math.max(maxErrors, FAIL_FAST);
+	}
+
+	/**
+	 * Creates an empty collector for a part of the file verified on its own (a method verified on
+	 * another thread), with the same cap and line numbers. Its errors are added to this collector by merge.
+	 * @return the new collector.
+	 */
+	public Diagnostics fork() {
+		Diagnostics part = new Diagnostics(maxErrors);
+		part.lineNumbers = lineNumbers;
+		part.lineCount = lineCount;
+		return part;
+	}
+
+	/**
+	 * Adds the errors of a forked collector, as if they were reported to this collector in the same order.
+	 * @param part the forked collector.
+	 * @return the error that stops the verification, or null if it goes on.
+	 */
+	public Throwable merge(Diagnostics part) {
+		for (int i = 0; i < part.errors.size(); i++) {
+			if (add(part.errorLines.get(i), part.errors.get(i))) {
+				return part.errors.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the source line number of the next cleaned line.
+	 * @param lineNumber line number in the source file (starting at 1).
+	 */
+	public void addLine(int lineNumber) {
+		if (lineCount == lineNumbers.length) {
+			lineNumbers = Arrays.copyOf(lineNumbers, lineCount * 2);
+		}
+		lineNumbers[lineCount++] = lineNumber;
+	}
+
+	/**
+	 * Gets the source line number of a cleaned line.
+	 * @param lineIndex index of the cleaned line.
+	 * @return source line number, or the index + 1 if the source lines are unknown.
+	 */
+	public int getLineNumber(int lineIndex) {
+		if (lineIndex < 0) {
+			return UNKNOWN_LINE;
+		}
+		return lineIndex < lineCount ? lineNumbers[lineIndex] : lineIndex + 1;
+	}
+
+	/**
+	 * Reports an error. Only the first error of every line is kept.
+	 * @param lineIndex index of the cleaned line of the error.
+	 * @param error the error.
+	 * @throws T the given error, if it stops the verification (fail fast, the cap is reached or it was
+	 * already stopped).
+	 */
+	public <T extends Throwable> void report(int lineIndex, T error) throws T {
+		if (add(lineIndex, error)) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Adds an error, unless an error of its line was already added.
+	 * The caller throws the error if it stops the verification (as report does).
+	 * @param lineIndex index of the cleaned line of the error.
+	 * @param error the error.
+	 * @return true if the error stops the verification.
+	 */
+	public boolean add(int lineIndex, Throwable error) {
+		if (stopped) {
+			return true;
+		}
+		if (lineIndex >= 0 && reportedLines.get(lineIndex)) {
+			return false; // an error of the same line, caused by the first one
+		}
+		if (lineIndex >= 0) {
+			reportedLines.set(lineIndex);
+		}
+		diagnostics.add(new Diagnostic(getLineNumber(lineIndex), error.getClass().getSimpleName(),
+				error.getMessage()));
+		errors.add(error);
+		errorLines.add(lineIndex);
+		if (diagnostics.size() >= maxErrors || error instanceof BudgetException) {
+			stopped = true;
+		}
+		return stopped;
+	}
+
+	/**
+	 * Checks if any error was reported.
+	 * @return true if there are errors.
+	 */
+	public boolean hasErrors() {
+		return !diagnostics.isEmpty();
+	}
+
+	/**
+	 * Gets the reported errors, in the order they were found.
+	 * @return reported errors.
+	 */
+	public ArrayList<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * A single reported error.
+	 */
+	public static class Diagnostic {
+		private final int lineNumber;
+		private final String kind;
+		private final String message;
+
+		/**
+		 * This is the constructor of Diagnostic.
+		 * @param lineNumber source line number (0 if unknown).
+		 * @param kind kind of the error (its exception class).
+		 * @param message error message.
+		 */
+		public Diagnostic(int lineNumber, String kind, String message) {
+			this.lineNumber = lineNumber;
+			this.kind = kind;
+			this.message = message;
+		}
+
+		/**
+		 * Gets the source line number.
+		 * @return source line number (0 if unknown).
+		 */
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		/**
+		 * Gets the kind of the error.
+		 * @return kind of the error.
+		 */
+		public String getKind() {
+			return kind;
+		}
+
+		/**
+		 * Gets the error message.
+		 * @return error message.
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return "line " + lineNumber + ": " + kind + ": " + message;
+		}
+	}
+}
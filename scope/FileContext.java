@@ -0,0 +1,67 @@
+package scope;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of verifying one file other than its errors: the budget, the stats and the conditions compiled
+ * in the file (generated files repeat the same conditions many times). The errors are collected by
+ * Diagnostics, which is forked for a method verified on its own; the context is not, every part of the file
+ * shares it, so it is safe to use from many threads.
+ */
+public class FileContext {
+	private static final int NO_LINE = -1;
+
+	private final Budget budget;
+	private final Stats stats;
+	private final ConcurrentHashMap<String, Condition> conditions = new ConcurrentHashMap<>();
+
+	/**
+	 * This is the constructor of FileContext, for a file verified without a budget or stats.
+	 */
+	public FileContext() {
+		this(null, Stats.DISABLED);
+	}
+
+	/**
+	 * This is the constructor of FileContext.
+	 * @param budget the budget of the file, or null for no limit.
+	 * @param stats the stats to record to (Stats.DISABLED to record none).
+	 */
+	public FileContext(Budget budget, Stats stats) {
+		this.budget = budget;
+		this.stats = stats;
+	}
+
+	/**
+	 * Gets the stats of the file.
+	 * @return the stats (Stats.DISABLED if none are recorded).
+	 */
+	public Stats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Gets a condition of the file, compiling it the first time it is written this way.
+	 * @param condition the condition, as written between the brackets.
+	 * @return the compiled condition.
+	 */
+	public Condition getCondition(String condition) {
+		return conditions.computeIfAbsent(condition, Condition::new);
+	}
+
+	/**
+	 * Spends steps of the budget, stopping the verification if it is used up.
+	 * @param steps number of steps.
+	 * @param diagnostics collector of the errors of the part of the file being verified.
+	 * @throws BudgetException if the budget is used up (it is reported without a line).
+	 */
+	public void spend(int steps, Diagnostics diagnostics) throws BudgetException {
+		if (budget == null) {
+			return;
+		}
+		BudgetException error = budget.spend(steps);
+		if (error != null) {
+			diagnostics.report(NO_LINE, error); // a BudgetException always stops the verification
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package scope;
 
 import java.util.ArrayList;
-import java.util.regex.Matcher;
+import java.util.HashSet;
 
 /**
  * This class represents a method.
@@ -12,60 +12,92 @@ public class Method extends Scope {
 	private String args;
 	public static final String RETURN = "return;";
 	private final ArrayList<Variable> arguments = new ArrayList<>();
+	private final HashSet<Variable> argumentSet = new HashSet<>(); // contains() of the list is linear
+	private boolean argsResolved;
+	private Throwable argsError;
+	private boolean argsErrorTaken;
 
 	/**
-	 * This is the constructor of Method.
-	 * @param lines lines of method.
+	 * This is the constructor of Method. The method is not added to the parent's methods.
+	 * Only the tokens of the method's own lines are found.
+	 * @param lines all lines of the file.
+	 * @param blockEnds index of the closing line of every block, by the index of its opening line.
+	 * @param header index of the method's first line.
 	 * @param parent scope parent.
+	 * @param diagnostics collector of the errors of the file.
+	 * @param context budget, stats and conditions of the file.
 	 */
-	public Method(ArrayList<String> lines, Scope parent) throws ScopeException {
-		this.lines = lines;
-		this.parentScope = parent;
-		this.type = METHOD;
-
-		isReturnExists();
-		setMethodArgs();
+	public Method(String[] lines, int[] blockEnds, int header, Scope parent, Diagnostics diagnostics,
+			FileContext context) throws ScopeException {
+		this(lines, blockEnds, Tokens.lex(lines, header, Math.max(header, blockEnds[header]) + 1, context,
+				diagnostics), header, parent, diagnostics, context);
 		buildScopeTree();
 	}
 
 	/**
-	 * Finds variable name in parent scope.
-	 * @param name variable name.
-	 * @return if found the Variable object of the given variable name, else null.
+	 * This is the constructor of a method inside the shared lines array. Its nested scopes are built by the
+	 * buildScopeTree of the scope that the building started at.
+	 * @param lines all lines of the file.
+	 * @param blockEnds index of the closing line of every block, by the index of its opening line.
+	 * @param tokens tokens of the lines.
+	 * @param header index of the method's first line.
+	 * @param parent scope parent.
+	 * @param diagnostics collector of the errors of the file.
+	 * @param context budget, stats and conditions of the file.
 	 */
-	public Variable getVarFromName(String name) throws VariableException {
-		if (nameToVar.get(name) == null) {
-			Variable parentVar = parentScope.getVarFromName(name);
-			if (parentVar != null) {
-				Variable newVar = new Variable(parentVar.getType(), parentVar
-						.getValue(), parentVar.getName(), parentVar.isConstant());
-				addVar(newVar);
-				return newVar;
-			}
+	Method(String[] lines, int[] blockEnds, Tokens tokens, int header, Scope parent, Diagnostics diagnostics,
+			FileContext context) throws ScopeException {
+		this.lines = lines;
+		this.blockEnds = blockEnds;
+		this.tokens = tokens;
+		this.parentScope = parent;
+		this.diagnostics = diagnostics;
+		this.context = context;
+		context.getStats().count(Stats.Counter.SCOPES);
+		context.getStats().count(Stats.Counter.METHODS);
+		this.symbols = new SymbolTable(parent.symbols);
+		this.type = METHOD;
+		this.start = header + 1;
+		this.end = blockEnds[header] + 1;
+
+		try {
+			isReturnExists();
+		} catch (ReturnException e) { // the method's body can still be verified
+			diagnostics.report(end - 1, e);
 		}
-		return  nameToVar.get(name);
+		setMethodArgs(header);
 	}
 
 	/**
 	 * Checks if the method ends with a return command.
 	 */
-	private void isReturnExists()throws ScopeException {
-		String returnString = lines.get(lines.size() - 2);
-		if (!returnString.matches(RETURN)) {
+	private void isReturnExists() throws ReturnException {
+		String returnString = lines[end - 2];
+		if (!returnString.equals(RETURN)) {
 			throw new ReturnException();
 		}
 	}
 
 	/**
 	 * Sets the arguments of the method.
+	 * @param header index of the method's first line.
+	 */
+	private void setMethodArgs(int header) throws CreateScopeException {
+		int close = tokens.matchMethodHeader(header);
+		if (close == -1) {
+			throw new CreateScopeException(lines[header]);
+		}
+		int first = tokens.getFirstToken(header);
+		methodName = tokens.getText(first + 1);
+		args = lines[header].substring(tokens.getEnd(first + 2), close);
+	}
+
+	/**
+	 * Gets the index of the method's first line (its signature).
+	 * @return index of the signature line.
 	 */
-	private void setMethodArgs() {
-		String firstLine = lines.get(0);
-		Matcher methodMatch = METHOD_PATTERN.matcher(firstLine);
-		methodMatch.find();
-		methodName = methodMatch.group(1);
-		args = methodMatch.group(2);
-		lines.remove(0);
+	public int getHeaderLine() {
+		return start - 1;
 	}
 
 	/**
@@ -89,12 +121,50 @@ public class Method extends Scope {
 	 * @return true if added successfully.
 	 */
 	public boolean addArg(Variable argument)throws SameNameException {
-		if (arguments.contains(argument)) {
+		if (!argumentSet.add(argument)) {
 			throw new SameNameException(argument);
 		}
 		return arguments.add(argument);
 	}
 
+	/**
+	 * Checks if the arguments were set (all of them, or up to the first invalid one).
+	 * @return true if they were set.
+	 */
+	public boolean isArgsResolved() {
+		return argsResolved;
+	}
+
+	/**
+	 * Records that the arguments were set, so they are never set again.
+	 * @param error the error that stopped setting them, or null if all were set.
+	 */
+	public void setArgsResolved(Throwable error) {
+		argsResolved = true;
+		argsError = error;
+	}
+
+	/**
+	 * Gets the error that stopped setting the arguments.
+	 * @return the error, or null if all were set.
+	 */
+	public Throwable getArgsError() {
+		return argsError;
+	}
+
+	/**
+	 * Takes the error of setting the arguments, for a caller (or the method's own body) that needs them.
+	 * While no argument is set every taker gets the error, once some are only the first taker does.
+	 * @return the error, or null.
+	 */
+	public Throwable takeArgsError() {
+		if (argsError == null || (argsErrorTaken && !arguments.isEmpty())) {
+			return null;
+		}
+		argsErrorTaken = true;
+		return argsError;
+	}
+
 	/**
 	 * Gets arguments of method.
 	 * @return arguments of method.
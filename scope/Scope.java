@@ -1,11 +1,14 @@
 package scope;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.ListIterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
 
 /**
  * This class represents a scope.
@@ -14,119 +17,244 @@ public class Scope {
 
 	private static final String MAIN = "Main";
 	protected static final String METHOD = "Method";
-	public static final Pattern METHOD_PATTERN =
-			Pattern.compile("void (?!int|double|String|boolean|char"+
-					"|void|final|if|while"
-					+")([a-zA-Z]+\\w*) ?\\((.*)\\) ?\\{");
-	public static final Pattern CONDITION_PATTERN =
-			Pattern.compile("(if|while)\\s*\\((.+)\\)\\s*\\{?");
-
-	protected ArrayList<String> lines;
+	public static final int NOT_A_BLOCK = -1;
+	public static final int UNCLOSED_BLOCK = -2;
+	private static final char START_BRACK = '{';
+	private static final char END_BRACK = '}';
+	private static final int INITIAL_DEPTH = 16;
+
+	protected String[] lines;
+	protected int[] blockEnds;
+	protected Tokens tokens;
+	protected int start;
+	protected int end;
 	protected Scope parentScope;
 	protected String type;
+	protected Diagnostics diagnostics;
+	protected FileContext context;
 	private final LinkedList<Scope> conditionScopes = new LinkedList<>();
 	private final LinkedList<Method> methodScopes = new LinkedList<>();
-	protected final HashMap<String, Variable> nameToVar = new HashMap<>();
+	private final HashMap<String, Method> nameToMethod = new HashMap<>();
+	protected SymbolTable symbols;
+	protected int depth;
+	private int mark;
 
 
 	/**
 	 * This is an empty constructor (so we don't need to call super() in Method class that extends Scope).
 	 */
-	public Scope() {}
+	public Scope() {
+		symbols = new SymbolTable(null);
+	}
 
 	/**
 	 * This is the constructor of Scope.
+	 * The lines are copied once into an array shared by all the nested scopes, so the caller's list
+	 * is left unchanged.
+	 * @param lines lines of scope (for a non global scope, the first line opens the scope).
+	 * @param parent scope parent (null for the global scope).
+	 */
+	public Scope(ArrayList<String> lines, Scope parent) throws ScopeException {
+		this(lines, parent, parent == null ? new Diagnostics(Diagnostics.FAIL_FAST) : parent.diagnostics,
+				parent == null ? new FileContext() : parent.context);
+	}
+
+	/**
+	 * This is the constructor of Scope that reports its errors to the given diagnostics.
+	 * @param lines lines of scope (for a non global scope, the first line opens the scope).
+	 * @param parent scope parent (null for the global scope).
+	 * @param diagnostics collector of the errors of the file.
+	 * @param context budget, stats and conditions of the file.
+	 */
+	public Scope(ArrayList<String> lines, Scope parent, Diagnostics diagnostics, FileContext context)
+			throws ScopeException {
+		this(lines.toArray(new String[0]), parent, diagnostics, context);
+	}
+
+	/**
+	 * Builds a scope over a new array of lines, finding their tokens once for all the nested scopes.
 	 * @param lines lines of scope.
 	 * @param parent scope parent.
+	 * @param diagnostics collector of the errors of the file.
+	 * @param context budget, stats and conditions of the file.
 	 */
-	public Scope(ArrayList<String> lines, Scope parent) throws ScopeException {
+	private Scope(String[] lines, Scope parent, Diagnostics diagnostics, FileContext context)
+			throws ScopeException {
+		this(lines, matchBlocks(lines, context.getStats()),
+				Tokens.lex(lines, 0, lines.length, context, diagnostics), parent == null ? NOT_A_BLOCK : 0, parent,
+				diagnostics, context);
+		buildScopeTree();
+	}
+
+	/**
+	 * This is the constructor of a scope inside the shared lines array. Its nested scopes are built by the
+	 * buildScopeTree of the scope that the building started at.
+	 * @param lines all lines of the file.
+	 * @param blockEnds index of the closing line of every block, by the index of its opening line.
+	 * @param tokens tokens of the lines.
+	 * @param header index of the line that opens the scope (NOT_A_BLOCK for the global scope).
+	 * @param parent scope parent.
+	 * @param diagnostics collector of the errors of the file.
+	 * @param context budget, stats and conditions of the file.
+	 */
+	Scope(String[] lines, int[] blockEnds, Tokens tokens, int header, Scope parent, Diagnostics diagnostics,
+			FileContext context) throws ScopeException {
 		this.lines = lines;
+		this.blockEnds = blockEnds;
+		this.tokens = tokens;
 		this.parentScope = parent;
+		this.diagnostics = diagnostics;
+		this.context = context;
+		context.getStats().count(Stats.Counter.SCOPES);
 		if (parent == null) {
-			lines.add(0, " ");
-			lines.add(lines.size(), " ");
+			symbols = new SymbolTable(null);
+		} else { // a condition scope binds its variables in the table of its method (or the global scope)
+			symbols = parent.symbols;
+			depth = parent.depth + 1;
+		}
+		if (header == NOT_A_BLOCK) {
 			type = MAIN;
-			buildScopeTree();
-			lines.remove(0);
-			lines.remove(lines.size()-1);
+			start = 0;
+			end = lines.length;
 		} else {
-			setScope();
-			buildScopeTree();
+			if (blockEnds[header] < 0) {
+				throw new CreateScopeException(lines[header]);
+			}
+			start = header + 1;
+			end = blockEnds[header] + 1;
+			setScope(header);
 		}
 	}
 
 	/**
-	 * Sets scope's parameters before building the scope tree.
+	 * Matches every line that opens a block with its closing line, in one pass with a stack.
+	 * @param lines all lines of the file.
+	 * @return index of the closing line by the index of the opening line, NOT_A_BLOCK for a line that
+	 * does not open a block and UNCLOSED_BLOCK for a block that is never closed.
 	 */
-	private void setScope() {
-		Matcher conditionMatch = CONDITION_PATTERN.matcher(lines.get(0));
-		conditionMatch.find();
-		type = conditionMatch.group(1);
-		lines.remove(0);
+	public static int[] matchBlocks(String[] lines) {
+		int[] blockEnds = new int[lines.length];
+		int[] openBlocks = new int[lines.length];
+		int depth = 0;
+		for (int i = 0; i < lines.length; i++) {
+			blockEnds[i] = NOT_A_BLOCK;
+			if (lines[i].indexOf(START_BRACK) != -1) {
+				blockEnds[i] = UNCLOSED_BLOCK;
+				openBlocks[depth++] = i;
+			} else if (lines[i].indexOf(END_BRACK) != -1 && depth > 0) {
+				blockEnds[openBlocks[--depth]] = i;
+			}
+		}
+		return blockEnds;
 	}
 
 	/**
-	 * Builds the scope tree.
+	 * Matches the blocks of the lines, as the brackets phase of the file; the scopes phase starts after it.
+	 * @param lines all lines of the file.
+	 * @param stats stats of the file.
+	 * @return index of the closing line by the index of the opening line.
 	 */
-	protected void buildScopeTree() throws ScopeException {
-		Pattern startBrackPattern = Pattern.compile("\\{");
-		Pattern endBrackPattern = Pattern.compile("\\}");
-		ListIterator<String> linesIterator = lines.listIterator();
+	private static int[] matchBlocks(String[] lines, Stats stats) {
+		stats.startPhase(Stats.Phase.BRACKETS);
+		int[] blockEnds = matchBlocks(lines);
+		stats.startPhase(Stats.Phase.SCOPES);
+		return blockEnds;
+	}
 
-		// go through current scope lines
-		while (linesIterator.hasNext()) {
-			String startLine = linesIterator.next();
-			if (startBrackPattern.matcher(startLine).find()) {
-				buildScopeTreeHelper(startLine, linesIterator, startBrackPattern.matcher(startLine),
-						endBrackPattern.matcher(startLine));
+	/**
+	 * Sets scope's parameters before building the scope tree.
+	 * @param header index of the line that opens the scope, a condition line.
+	 */
+	private void setScope(int header) {
+		type = tokens.getText(tokens.getFirstToken(header));
+	}
 
+	/**
+	 * Builds the scope tree under this scope.
+	 * Every nested block becomes a child scope, and its opening line (without the bracket) stands for
+	 * the whole block in its parent's lines. A block that fails is reported and skipped.
+	 * The blocks are built one after the other, with a stack of the scopes being built instead of a call per
+	 * level, so a deeply nested file can't overflow the thread's stack.
+	 */
+	protected void buildScopeTree() throws ScopeException {
+		ArrayList<Scope> building = new ArrayList<>(); // every scope is inside the one before it
+		int[] nextLines = new int[INITIAL_DEPTH]; // the line of each scope to go on from
+		building.add(this);
+		nextLines[0] = start;
+		while (!building.isEmpty()) {
+			int top = building.size() - 1;
+			Scope scope = building.get(top);
+			int header = scope.findBlock(nextLines[top]);
+			if (header == scope.end) { // the scope is built
+				building.remove(top);
+				if (top > 0) {
+					building.get(top - 1).addNestedScope(scope);
+				}
+				continue;
+			}
+			nextLines[top] = blockEnds[header] + 1;
+			try {
+				Scope child = scope.createNestedScope(header);
+				if (building.size() == nextLines.length) {
+					nextLines = Arrays.copyOf(nextLines, nextLines.length * 2);
+				}
+				nextLines[building.size()] = child.start;
+				building.add(child);
+			} catch (ScopeException e) {
+				diagnostics.report(header, e);
 			}
 		}
 	}
 
 	/**
-	 * Helper function that is responsible for creating scope that starts in startBrackMatcher.
-	 * @param startLine first line in scope.
-	 * @param linesIterator iterator for the scope lines.
-	 * @param startBrackMatcher opening bracket of the scope.
-	 * @param endBrackMatcher last bracket of the scope.
+	 * Finds the next line of this scope that opens a block.
+	 * @param from index of the line to start at.
+	 * @return index of the line, or the end of the scope if there is none (or the block is never closed, which
+	 * is reported: the rest of the scope is inside it).
 	 */
-	private void buildScopeTreeHelper(String startLine, ListIterator<String> linesIterator,
-									  Matcher startBrackMatcher, Matcher endBrackMatcher)
-			throws ScopeException {
-		String firstLine = startLine;
-		ArrayList<String> tempLines = new ArrayList<>();
-		int numBracks = 1;
-		while (numBracks > 0) {
-			tempLines.add(startLine);
-			linesIterator.remove();
-			startLine = linesIterator.next();
-			startBrackMatcher.reset(startLine);
-			endBrackMatcher.reset(startLine);
-			if (startBrackMatcher.find()) {
-				numBracks++;
-			} else if (endBrackMatcher.find()) {
-				numBracks--;
+	private int findBlock(int from) throws ScopeException {
+		for (int i = from; i < end; i++) {
+			if (blockEnds[i] == UNCLOSED_BLOCK) {
+				diagnostics.report(i, new CreateScopeException(lines[i]));
+				return end;
+			}
+			if (blockEnds[i] != NOT_A_BLOCK) {
+				return i;
 			}
 		}
-		tempLines.add(startLine);
-		createNestedScope(tempLines, this);
-		linesIterator.set(firstLine.substring(0, firstLine.indexOf('{')));
+		return end;
 	}
 
 	/**
-	 * Creates nested scope (the given scope parent's child).
-	 * @param scopeCode first line in scope.
-	 * @param parent parent scope.
+	 * Creates a nested scope (this scope's child), without its own nested scopes.
+	 * @param header index of the line that opens the scope.
+	 * @return the child scope.
 	 */
-	void createNestedScope(ArrayList<String> scopeCode, Scope parent) throws ScopeException {
-		if (CONDITION_PATTERN.matcher(scopeCode.get(0)).matches() && parent != null) {
-			conditionScopes.addLast(new Scope(scopeCode, this));
-		} else if (METHOD_PATTERN.matcher(scopeCode.get(0)).matches()) {
-			methodScopes.addLast(new Method(scopeCode, this));
+	Scope createNestedScope(int header) throws ScopeException {
+		if (tokens.matchCondition(header) != -1) { // a condition of the global scope is reported when it is parsed
+			return new Scope(lines, blockEnds, tokens, header, this, diagnostics, context);
+		} else if (tokens.matchMethodHeader(header) != -1) {
+			return new Method(lines, blockEnds, tokens, header, this, diagnostics, context);
+		}
+		throw new CreateScopeException(lines[header]);
+	}
+
+	/**
+	 * Adds a nested scope once it is built, and cuts the bracket from the line that opens it.
+	 * @param child the child scope.
+	 */
+	private void addNestedScope(Scope child) {
+		if (child instanceof Method) {
+			Method method = (Method) child;
+			methodScopes.addLast(method);
+			nameToMethod.put(method.getMethodName(), method); // the last method of a name is the one called
 		} else {
-			throw new CreateScopeException(scopeCode.get(0));
+			conditionScopes.addLast(child);
 		}
+		int header = child.start - 1;
+		int bracket = lines[header].indexOf(START_BRACK);
+		lines[header] = lines[header].substring(0, bracket);
+		tokens.cut(header, bracket);
 	}
 
 
@@ -136,24 +264,55 @@ public class Scope {
 	 * @return variable of given name.
 	 */
 	public Variable getVarFromName(String name) throws VariableException {
-		if (nameToVar.get(name) != null) {
-			return nameToVar.get(name);
-		} else if (parentScope != null) {
-			return parentScope.getVarFromName(name);
-		}
-		return nameToVar.get(name);
+		return symbols.get(name);
 	}
 
 
 	/**
-	 * Adds a given variable to nameToVar hash map.
+	 * Gets a variable from a given name, to assign to it. A variable of the parent of a method is copied
+	 * into the method first, so the assignment never changes the parent.
+	 * @param name variable name.
+	 * @return variable of given name, or null if not found.
+	 */
+	public Variable getVarForAssign(String name) throws VariableException {
+		return symbols.getForAssign(name);
+	}
+
+
+	/**
+	 * Adds a given variable to the variables of this scope.
 	 * @param var variable tp add.
 	 */
 	public void addVar(Variable var) throws SameNameException {
-		if (nameToVar.containsKey(var.getName())) {
+		if (symbols.isDeclared(var.getName(), depth)) {
 			throw new SameNameException(var);
 		}
-		nameToVar.put(var.getName(), var);
+		symbols.declare(var, depth);
+		if (context != null) { // a scope that only checks arguments has no context
+			context.getStats().count(Stats.Counter.VARIABLES);
+		}
+	}
+
+	/**
+	 * Gets the variables declared in this scope (a condition scope's variables are dropped when it is left).
+	 * @return variables of this scope (read only).
+	 */
+	public Collection<Variable> getVars() {
+		return Collections.unmodifiableCollection(symbols.getDeclared(depth));
+	}
+
+	/**
+	 * Enters this scope before its lines are parsed.
+	 */
+	public void enter() {
+		mark = symbols.mark();
+	}
+
+	/**
+	 * Leaves this scope once it was parsed, dropping its variables.
+	 */
+	public void leave() {
+		symbols.reset(mark);
 	}
 
 	/**
@@ -181,12 +340,129 @@ public class Scope {
 	}
 
 	/**
-	 * Gets scope's lines.
+	 * Gets a method declared in this scope from a given name.
+	 * @param name method name.
+	 * @return the (last) method of the given name declared in this scope, or null.
+	 */
+	public Method getMethodFromName(String name) {
+		return nameToMethod.get(name);
+	}
+
+	/**
+	 * Removes a method from this scope's methods, so it is no longer found or verified through it.
+	 * @param method method to remove.
+	 */
+	public void removeMethodScope(Method method) {
+		methodScopes.remove(method);
+		if (nameToMethod.get(method.getMethodName()) == method) {
+			nameToMethod.remove(method.getMethodName());
+			for (Method other : methodScopes) { // an earlier method of the same name is found again
+				if (other.getMethodName().equals(method.getMethodName())) {
+					nameToMethod.put(other.getMethodName(), other);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the collector of the errors of this scope and all its nested scopes.
+	 * @param diagnostics collector of the errors.
+	 */
+	public void setDiagnostics(Diagnostics diagnostics) {
+		ArrayDeque<Scope> scopes = new ArrayDeque<>(); // no recursion, for nesting of any depth
+		scopes.push(this);
+		while (!scopes.isEmpty()) {
+			Scope scope = scopes.pop();
+			scope.diagnostics = diagnostics;
+			scope.conditionScopes.forEach(scopes::push);
+			scope.methodScopes.forEach(scopes::push);
+		}
+	}
+
+	/**
+	 * Gets the collector of the errors of the file.
+	 * @return diagnostics of the file.
+	 */
+	public Diagnostics getDiagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * Gets the budget, stats and conditions of the file.
+	 * @return context of the file.
+	 */
+	public FileContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Gets the index of the scope's first line.
+	 * @return index of the first line.
+	 */
+	public int getFirstLine() {
+		return start;
+	}
+
+	/**
+	 * Gets the index of the scope's line after the given one (a nested block is a single line).
+	 * @param index index of a line of the scope.
+	 * @return index of the next line, or getEndLine() after the last line.
+	 */
+	public int getNextLine(int index) {
+		if (blockEnds[index] == UNCLOSED_BLOCK) {
+			return end;
+		}
+		return blockEnds[index] == NOT_A_BLOCK ? index + 1 : blockEnds[index] + 1;
+	}
+
+	/**
+	 * Gets the index after the scope's last line.
+	 * @return index after the last line.
+	 */
+	public int getEndLine() {
+		return end;
+	}
+
+	/**
+	 * Gets the tokens of the scope's lines.
+	 * @return tokens of the lines (shared by all the scopes of the file).
+	 */
+	public Tokens getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Gets a line of the scope.
+	 * @param index index of the line.
+	 * @return the line (a nested block is its opening line without the bracket).
+	 */
+	public String getLine(int index) {
+		return lines[index];
+	}
+
+	/**
+	 * Gets scope's lines (a nested block is a single line, its opening line without the bracket).
 	 * @return scope's lines.
 	 */
-	public ArrayList<String> getLines() {
-		return lines;
+	public Iterable<String> getLines() {
+		return () -> new Iterator<String>() {
+			private int next = start;
+
+			@Override
+			public boolean hasNext() {
+				return next < end;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				String line = lines[next];
+				next = getNextLine(next);
+				return line;
+			}
+		};
 	}
 
 }
-
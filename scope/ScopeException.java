@@ -5,6 +5,6 @@ package scope;
  */
 public class ScopeException extends Throwable {
 	public ScopeException(String s) {
-		super(s);
+		super(s, null, false, false);
 	}
 }
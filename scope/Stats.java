@@ -0,0 +1,244 @@
+package scope;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The time, allocation and counts of verifying files.
+ * The phases of a file run one after the other on the verifying thread: starting a phase ends the phase that
+ * runs. The counters are shared by the collectors forked for the methods verified in parallel (the allocation
+ * is only that of the verifying thread).
+ * <p>
+ * DISABLED records nothing, so verifying without stats costs a check per recorded event.
+ */
+public class Stats {
+	/**
+	 * The phases of verifying a file.
+	 */
+	public enum Phase {
+		READ("read"), CLEAN("clean"), BRACKETS("brackets"), SCOPES("scopes"), PARSE("parse");
+
+		private final String key;
+
+		/**
+		 * This is the constructor of Phase.
+		 * @param key the phase's name in the JSON dump.
+		 */
+		Phase(String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Gets the phase's name in the JSON dump.
+		 * @return the name.
+		 */
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * The counted things.
+	 */
+	public enum Counter {
+		FILES("files"), CACHE_HITS("cacheHits"), LINES("lines"), SCOPES("scopes"), METHODS("methods"),
+		VARIABLES("variables"), CALLS("calls");
+
+		private final String key;
+
+		/**
+		 * This is the constructor of Counter.
+		 * @param key the counter's name in the JSON dump.
+		 */
+		Counter(String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Gets the counter's name in the JSON dump.
+		 * @return the name.
+		 */
+		public String getKey() {
+			return key;
+		}
+	}
+
+	public static final Stats DISABLED = new Stats(false);
+	private static final int NO_PHASE = -1;
+
+	private final boolean enabled;
+	private final long[] nanos = new long[Phase.values().length];
+	private final long[] bytes = new long[Phase.values().length];
+	private final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+	private int phase = NO_PHASE;
+	private long phaseNanos;
+	private long phaseBytes;
+
+	/**
+	 * This is the constructor of Stats, recording from now on.
+	 */
+	public Stats() {
+		this(true);
+	}
+
+	/**
+	 * This is the constructor of Stats.
+	 * @param enabled false to record nothing.
+	 */
+	private Stats(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Checks if anything is recorded.
+	 * @return false for DISABLED.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Ends the running phase (if any) and starts a phase.
+	 * @param next the phase to start.
+	 */
+	public void startPhase(Phase next) {
+		if (enabled) {
+			switchPhase(next.ordinal());
+		}
+	}
+
+	/**
+	 * Ends the running phase (if any).
+	 */
+	public void endPhase() {
+		if (enabled) {
+			switchPhase(NO_PHASE);
+		}
+	}
+
+	/**
+	 * Charges the time and allocation since the running phase started to it, and starts the next one.
+	 */
+	private void switchPhase(int next) {
+		long allocated = Allocation.getCurrentThreadBytes(); // first, so loading the bean is not timed
+		long now = System.nanoTime();
+		if (phase != NO_PHASE) {
+			nanos[phase] += now - phaseNanos;
+			bytes[phase] += allocated - phaseBytes;
+		}
+		phase = next;
+		phaseNanos = now;
+		phaseBytes = allocated;
+	}
+
+	/**
+	 * Counts one more.
+	 * @param counter the counter.
+	 */
+	public void count(Counter counter) {
+		count(counter, 1);
+	}
+
+	/**
+	 * Counts more.
+	 * @param counter the counter.
+	 * @param count how many more.
+	 */
+	public void count(Counter counter, long count) {
+		if (enabled) {
+			counts.addAndGet(counter.ordinal(), count);
+		}
+	}
+
+	/**
+	 * Adds the records of another file (its phases must be ended).
+	 * @param other the stats of the file.
+	 */
+	public synchronized void add(Stats other) {
+		if (!enabled || !other.enabled) {
+			return;
+		}
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] += other.nanos[i];
+			bytes[i] += other.bytes[i];
+		}
+		for (int i = 0; i < counts.length(); i++) {
+			counts.addAndGet(i, other.counts.get(i));
+		}
+	}
+
+	/**
+	 * Gets the time spent in a phase.
+	 * @param of the phase.
+	 * @return time in nanoseconds.
+	 */
+	public synchronized long getNanos(Phase of) {
+		return nanos[of.ordinal()];
+	}
+
+	/**
+	 * Gets the bytes allocated in a phase.
+	 * @param of the phase.
+	 * @return allocated bytes (0 if the JVM doesn't measure them).
+	 */
+	public synchronized long getBytes(Phase of) {
+		return bytes[of.ordinal()];
+	}
+
+	/**
+	 * Gets a count.
+	 * @param counter the counter.
+	 * @return the count.
+	 */
+	public long getCount(Counter counter) {
+		return counts.get(counter.ordinal());
+	}
+
+	/**
+	 * Gets the records as a JSON object: {"phases": {name: {"nanos": n, "bytes": n}, ...}, "counts": {...}}.
+	 * @return the JSON text.
+	 */
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\"phases\": {");
+		for (Phase of : Phase.values()) {
+			json.append(of.ordinal() == 0 ? "" : ", ").append('"').append(of.key).append("\": {\"nanos\": ")
+					.append(nanos[of.ordinal()]).append(", \"bytes\": ").append(bytes[of.ordinal()]).append('}');
+		}
+		json.append("}, \"counts\": {");
+		for (Counter counter : Counter.values()) {
+			json.append(counter.ordinal() == 0 ? "" : ", ").append('"').append(counter.key).append("\": ")
+					.append(getCount(counter));
+		}
+		return json.append("}}").toString();
+	}
+
+	/**
+	 * Measures the allocation of the current thread, if the JVM can (loaded only when stats are recorded).
+	 */
+	private static class Allocation {
+		private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+
+		/**
+		 * Gets the bean that measures allocation.
+		 * @return the bean, or null if allocation is not measured.
+		 */
+		private static com.sun.management.ThreadMXBean getThreads() {
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+				return null;
+			}
+			com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+			return allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled() ?
+					allocation : null;
+		}
+
+		/**
+		 * Gets the bytes allocated by the current thread so far.
+		 * @return allocated bytes, or 0 if allocation is not measured.
+		 */
+		static long getCurrentThreadBytes() {
+			return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+		}
+	}
+}
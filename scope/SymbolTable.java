@@ -0,0 +1,175 @@
+package scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The variables visible while a scope is parsed.
+ * The global scope and every method have a table, shared by all their nested condition scopes: every name
+ * is interned to an id once, the variable a name is bound to is found by its id, and a declaration is pushed
+ * on a stack (with the binding it hides), so leaving a condition scope only pops back to its mark.
+ * <p>
+ * A method's table looks a name it doesn't know up in its parent's table, and binds the name to the parent's
+ * variable itself. The variable is copied into the method only when the method assigns to it, so the parent's
+ * variables are never changed by a method (and the parent's table is only read).
+ */
+class SymbolTable {
+	private static final int INITIAL_SIZE = 16;
+
+	private final SymbolTable parent;
+	private final HashMap<String, Integer> ids = new HashMap<>();
+	private Variable[] bound = new Variable[0];
+	private int[] boundDepths = new int[0];
+	private boolean[] shared = new boolean[0];
+	private int[] declaredIds = new int[0];
+	private Variable[] declaredVars = new Variable[0];
+	private Variable[] hiddenVars = new Variable[0];
+	private int[] hiddenDepths = new int[0];
+	private boolean[] hiddenShared = new boolean[0];
+	private int size;
+
+	/**
+	 * This is the constructor of SymbolTable.
+	 * @param parent table of the scope a method is declared in (null for the global scope).
+	 */
+	SymbolTable(SymbolTable parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * Gets the variable a name is bound to.
+	 * @param name variable name.
+	 * @return the variable, or null if the name is not bound here or in a parent table.
+	 */
+	Variable get(String name) {
+		Integer id = ids.get(name);
+		if (id != null && bound[id] != null) {
+			return bound[id];
+		}
+		if (parent == null) {
+			return null;
+		}
+		Variable var = parent.get(name);
+		if (var != null) { // bound at the method's level, so declaring the name in the method fails from now on
+			int newId = id != null ? id : intern(name);
+			bound[newId] = var;
+			boundDepths[newId] = 0;
+			shared[newId] = true;
+		}
+		return var;
+	}
+
+	/**
+	 * Gets the variable a name is bound to, to assign to it. A parent's variable is copied first.
+	 * @param name variable name.
+	 * @return the variable, or null if the name is not bound here or in a parent table.
+	 */
+	Variable getForAssign(String name) {
+		Variable var = get(name);
+		if (var != null) {
+			int id = ids.get(name);
+			if (shared[id]) {
+				var = new Variable(var);
+				bound[id] = var;
+				shared[id] = false;
+			}
+		}
+		return var;
+	}
+
+	/**
+	 * Checks if a name is declared in a scope of the given depth.
+	 * @param name variable name.
+	 * @param depth depth of the scope (0 for the global scope or a method).
+	 * @return true if the name is bound by that scope.
+	 */
+	boolean isDeclared(String name, int depth) {
+		Integer id = ids.get(name);
+		return id != null && bound[id] != null && boundDepths[id] == depth;
+	}
+
+	/**
+	 * Declares a variable in a scope of the given depth, hiding the binding of its name until the scope is left.
+	 * @param var variable to declare.
+	 * @param depth depth of the scope.
+	 */
+	void declare(Variable var, int depth) {
+		Integer known = ids.get(var.getName());
+		int id = known != null ? known : intern(var.getName());
+		if (size == declaredIds.length) {
+			int capacity = Math.max(INITIAL_SIZE, size * 2);
+			declaredIds = Arrays.copyOf(declaredIds, capacity);
+			declaredVars = Arrays.copyOf(declaredVars, capacity);
+			hiddenVars = Arrays.copyOf(hiddenVars, capacity);
+			hiddenDepths = Arrays.copyOf(hiddenDepths, capacity);
+			hiddenShared = Arrays.copyOf(hiddenShared, capacity);
+		}
+		declaredIds[size] = id;
+		declaredVars[size] = var;
+		hiddenVars[size] = bound[id];
+		hiddenDepths[size] = boundDepths[id];
+		hiddenShared[size] = shared[id];
+		size++;
+		bound[id] = var;
+		boundDepths[id] = depth;
+		shared[id] = false;
+	}
+
+	/**
+	 * Gets the mark to pop back to when the scope entered now is left.
+	 * @return the mark.
+	 */
+	int mark() {
+		return size;
+	}
+
+	/**
+	 * Drops the declarations made since the mark, binding their names as they were before.
+	 * @param mark the mark of the scope that is left.
+	 */
+	void reset(int mark) {
+		while (size > mark) {
+			size--;
+			int id = declaredIds[size];
+			bound[id] = hiddenVars[size];
+			boundDepths[id] = hiddenDepths[size];
+			shared[id] = hiddenShared[size];
+			declaredVars[size] = null;
+			hiddenVars[size] = null;
+		}
+	}
+
+	/**
+	 * Gets the variables declared in a scope of the given depth that were not dropped yet.
+	 * @param depth depth of the scope.
+	 * @return the variables, in declaration order.
+	 */
+	List<Variable> getDeclared(int depth) {
+		List<Variable> vars = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			if (bound[declaredIds[i]] == declaredVars[i] && boundDepths[declaredIds[i]] == depth) {
+				vars.add(declaredVars[i]);
+			}
+		}
+		return vars;
+	}
+
+	/**
+	 * Gives a new name an id.
+	 * @param name variable name.
+	 * @return the id.
+	 */
+	private int intern(String name) {
+		int id = ids.size();
+		ids.put(name, id);
+		if (id == bound.length) {
+			int capacity = Math.max(INITIAL_SIZE, id * 2);
+			bound = Arrays.copyOf(bound, capacity);
+			boundDepths = Arrays.copyOf(boundDepths, capacity);
+			shared = Arrays.copyOf(shared, capacity);
+		}
+		return id;
+	}
+}
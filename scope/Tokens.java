@@ -0,0 +1,408 @@
+package scope;
+
+import java.util.Arrays;
+
+/**
+ * The tokens of the lines of a file, found in a single scan when its scopes are built.
+ * A token is a word (a run of letters, digits and underscores) or any other single char, apart from whitespace
+ * (the chars of \s in a pattern), which only separates tokens. The kind and the offsets of every token are kept
+ * in flat arrays, so the scopes and the parser look at tokens instead of running patterns over the lines.
+ * <p>
+ * The tokens are shared by all the scopes of the file, like its lines. When the bracket is cut from the line
+ * that opens a block, the line's tokens are cut with it.
+ */
+public class Tokens {
+	/**
+	 * A word: a run of letters, digits and underscores.
+	 */
+	public static final byte WORD = 0;
+	/**
+	 * A control char that is not whitespace (trim() removes it, but it separates nothing).
+	 */
+	public static final byte CONTROL = 1;
+	/**
+	 * Any other char.
+	 */
+	public static final byte SYMBOL = 2;
+	private static final int INITIAL_SIZE = 16;
+	private static final String IF = "if";
+	private static final String WHILE = "while";
+	private static final String VOID = "void";
+	private static final String[] RESERVED = {"int", "double", "String", "boolean", "char", "void", "final", "if",
+			"while"};
+	private static final char OPEN_BRACKET = '(';
+	private static final char CLOSE_BRACKET = ')';
+	private static final char START_BRACK = '{';
+	private static final char SPACE = ' ';
+
+	private final String[] lines;
+	private final int firstLine;
+	private final int[] lineFirst;
+	private final int[] lineEnd;
+	private byte[] kinds = new byte[INITIAL_SIZE];
+	private int[] starts = new int[INITIAL_SIZE];
+	private int[] ends = new int[INITIAL_SIZE];
+	private int[] tokenLines = new int[INITIAL_SIZE];
+	private int size;
+
+	/**
+	 * This is the constructor of Tokens. The lines are scanned by lex.
+	 * @param lines lines of the file.
+	 * @param from index of the first line to scan.
+	 * @param to index after the last line to scan.
+	 */
+	private Tokens(String[] lines, int from, int to) {
+		this.lines = lines;
+		this.firstLine = from;
+		this.lineFirst = new int[to - from];
+		this.lineEnd = new int[to - from];
+	}
+
+	/**
+	 * Finds the tokens of all the lines of a file.
+	 * @param lines lines of the file (the array is kept, so cutting a line is seen by the tokens).
+	 * @return the tokens.
+	 */
+	public static Tokens lex(String[] lines) {
+		return lex(lines, 0, lines.length);
+	}
+
+	/**
+	 * Finds the tokens of some of the lines of a file.
+	 * @param lines lines of the file.
+	 * @param from index of the first line to scan.
+	 * @param to index after the last line to scan.
+	 * @return the tokens (only the scanned lines may be asked for).
+	 */
+	public static Tokens lex(String[] lines, int from, int to) {
+		Tokens tokens = new Tokens(lines, from, to);
+		for (int i = from; i < to; i++) {
+			tokens.scanLine(i);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Finds the tokens of some of the lines of a file, spending a step of the file's budget per token.
+	 * @param lines lines of the file (the array is kept, so cutting a line is seen by the tokens).
+	 * @param from index of the first line to scan.
+	 * @param to index after the last line to scan.
+	 * @param context budget of the file.
+	 * @param diagnostics collector of the errors of the file.
+	 * @return the tokens (only the scanned lines may be asked for).
+	 * @throws BudgetException if the budget is used up.
+	 */
+	public static Tokens lex(String[] lines, int from, int to, FileContext context, Diagnostics diagnostics)
+			throws BudgetException {
+		Tokens tokens = new Tokens(lines, from, to);
+		for (int i = from; i < to; i++) {
+			tokens.scanLine(i);
+			context.spend(tokens.getEndToken(i) - tokens.getFirstToken(i), diagnostics);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Finds the tokens of a single line (its index is 0).
+	 * @param line the line.
+	 * @return the tokens.
+	 */
+	public static Tokens lex(String line) {
+		return lex(new String[] {line});
+	}
+
+	/**
+	 * Scans a line, keeping the range of its tokens.
+	 */
+	private void scanLine(int lineIndex) {
+		lineFirst[lineIndex - firstLine] = size;
+		scan(lines[lineIndex], lineIndex);
+		lineEnd[lineIndex - firstLine] = size;
+	}
+
+	/**
+	 * Adds the tokens of a line.
+	 */
+	private void scan(String line, int lineIndex) {
+		int length = line.length();
+		int i = 0;
+		while (i < length) {
+			char c = line.charAt(i);
+			if (isWhitespace(c)) {
+				i++;
+			} else if (isWordChar(c)) {
+				int start = i;
+				while (i < length && isWordChar(line.charAt(i))) {
+					i++;
+				}
+				add(WORD, start, i, lineIndex);
+			} else {
+				add(c < SPACE ? CONTROL : SYMBOL, i, i + 1, lineIndex);
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Adds a token.
+	 */
+	private void add(byte kind, int start, int end, int lineIndex) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			tokenLines = Arrays.copyOf(tokenLines, capacity);
+		}
+		kinds[size] = kind;
+		starts[size] = start;
+		ends[size] = end;
+		tokenLines[size] = lineIndex;
+		size++;
+	}
+
+	/**
+	 * Checks if a char is whitespace, as \s of a pattern.
+	 * @param c a char.
+	 * @return true for a space, tab, new line, vertical tab, form feed or carriage return.
+	 */
+	public static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Checks if a char is a word char, as \w of a pattern.
+	 * @param c a char.
+	 * @return true for an ASCII letter, a digit or an underscore.
+	 */
+	public static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	/**
+	 * Checks if a char ends a line, so . of a pattern doesn't match it.
+	 * @param c a char.
+	 * @return true for a line terminator.
+	 */
+	public static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	/**
+	 * Cuts a line at the given offset, dropping its tokens from there.
+	 * @param line index of the line (its text is cut by the caller).
+	 * @param offset offset of the first dropped char, at the start of a token.
+	 */
+	void cut(int line, int offset) {
+		int end = lineFirst[line - firstLine];
+		while (end < lineEnd[line - firstLine] && starts[end] < offset) {
+			end++;
+		}
+		lineEnd[line - firstLine] = end;
+	}
+
+	/**
+	 * Gets a line.
+	 * @param line index of the line.
+	 * @return the line, as it is now.
+	 */
+	public String getLine(int line) {
+		return lines[line];
+	}
+
+	/**
+	 * Gets the first token of a line.
+	 * @param line index of the line.
+	 * @return index of the first token (equal to getEndToken if the line has no tokens).
+	 */
+	public int getFirstToken(int line) {
+		return lineFirst[line - firstLine];
+	}
+
+	/**
+	 * Gets the index after the last token of a line.
+	 * @param line index of the line.
+	 * @return index after the last token.
+	 */
+	public int getEndToken(int line) {
+		return lineEnd[line - firstLine];
+	}
+
+	/**
+	 * Gets the kind of a token.
+	 * @param token index of the token.
+	 * @return WORD, CONTROL or SYMBOL.
+	 */
+	public byte getKind(int token) {
+		return kinds[token];
+	}
+
+	/**
+	 * Gets the offset of a token in its line.
+	 * @param token index of the token.
+	 * @return offset of the token's first char.
+	 */
+	public int getStart(int token) {
+		return starts[token];
+	}
+
+	/**
+	 * Gets the offset after a token in its line.
+	 * @param token index of the token.
+	 * @return offset after the token's last char.
+	 */
+	public int getEnd(int token) {
+		return ends[token];
+	}
+
+	/**
+	 * Gets the first char of a token.
+	 * @param token index of the token.
+	 * @return the char.
+	 */
+	public char getFirstChar(int token) {
+		return lines[tokenLines[token]].charAt(starts[token]);
+	}
+
+	/**
+	 * Gets the text of a token.
+	 * @param token index of the token.
+	 * @return the text.
+	 */
+	public String getText(int token) {
+		return lines[tokenLines[token]].substring(starts[token], ends[token]);
+	}
+
+	/**
+	 * Checks if a token is the given char.
+	 * @param token index of the token.
+	 * @param c a char that is not a word char.
+	 * @return true if the token is that char.
+	 */
+	public boolean isSymbol(int token, char c) {
+		return kinds[token] != WORD && getFirstChar(token) == c;
+	}
+
+	/**
+	 * Checks if a token is exactly the given word.
+	 * @param token index of the token.
+	 * @param word a word.
+	 * @return true if the token is that word.
+	 */
+	public boolean isWord(int token, String word) {
+		return kinds[token] == WORD && ends[token] - starts[token] == word.length()
+				&& lines[tokenLines[token]].startsWith(word, starts[token]);
+	}
+
+	/**
+	 * Checks if a word token starts with a reserved word (a type, void, final, if or while).
+	 * @param token index of a word token.
+	 * @return true if it starts with a reserved word.
+	 */
+	public boolean hasReservedPrefix(int token) {
+		return hasReservedPrefix(lines[tokenLines[token]], starts[token], ends[token]);
+	}
+
+	/**
+	 * Checks if the text between two offsets starts with a reserved word (a type, void, final, if or while).
+	 * @param text a text.
+	 * @param start first offset.
+	 * @param end offset after the checked chars.
+	 * @return true if it starts with a reserved word.
+	 */
+	public static boolean hasReservedPrefix(String text, int start, int end) {
+		for (String reserved : RESERVED) {
+			if (end - start >= reserved.length() && text.startsWith(reserved, start)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if a line has a line terminator between two offsets.
+	 * @param line index of the line.
+	 * @param from first offset.
+	 * @param to offset after the last checked char.
+	 * @return true if a char between the offsets ends a line.
+	 */
+	public boolean hasLineTerminator(int line, int from, int to) {
+		String text = lines[line];
+		for (int i = from; i < to; i++) {
+			if (isLineTerminator(text.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Matches a condition line: if or while, a condition between round brackets and an optional curly
+	 * bracket.
+	 * @param line index of the line.
+	 * @return offset of the closing round bracket (the opening one is the line's second token), or -1 if
+	 * the line is not a condition.
+	 */
+	public int matchCondition(int line) {
+		String text = lines[line];
+		int first = getFirstToken(line);
+		if (getEndToken(line) - first < 2 || starts[first] != 0 || !(isWord(first, IF) || isWord(first, WHILE))
+				|| !isSymbol(first + 1, OPEN_BRACKET)) {
+			return -1;
+		}
+		int end = text.length();
+		if (text.charAt(end - 1) == START_BRACK) {
+			end--;
+		}
+		while (end > 0 && isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		int open = starts[first + 1];
+		int close = end - 1;
+		if (close <= open + 1 || text.charAt(close) != CLOSE_BRACKET || hasLineTerminator(line, open + 1, close)) {
+			return -1;
+		}
+		return close;
+	}
+
+	/**
+	 * Matches the first line of a method: void, its name, its arguments between round brackets and a curly
+	 * bracket.
+	 * @param line index of the line.
+	 * @return offset of the closing round bracket (the name and the opening bracket are the line's second and
+	 * third tokens), or -1 if the line is not a method's first line.
+	 */
+	public int matchMethodHeader(int line) {
+		String text = lines[line];
+		int first = getFirstToken(line);
+		if (getEndToken(line) - first < 3 || starts[first] != 0 || !isWord(first, VOID)
+				|| starts[first + 1] != ends[first] + 1 || text.charAt(ends[first]) != SPACE
+				|| kinds[first + 1] != WORD || !isLetter(getFirstChar(first + 1)) || hasReservedPrefix(first + 1)
+				|| !isSymbol(first + 2, OPEN_BRACKET)) {
+			return -1;
+		}
+		int open = starts[first + 2];
+		if (open != ends[first + 1] && (open != ends[first + 1] + 1 || text.charAt(ends[first + 1]) != SPACE)) {
+			return -1;
+		}
+		int end = text.length() - 1;
+		if (text.charAt(end) != START_BRACK) {
+			return -1;
+		}
+		int close = text.charAt(end - 1) == CLOSE_BRACKET ? end - 1 : end - 2;
+		if (close <= open || text.charAt(close) != CLOSE_BRACKET || close == end - 2 && text.charAt(end - 1) != SPACE
+				|| hasLineTerminator(line, open + 1, close)) {
+			return -1;
+		}
+		return close;
+	}
+
+	/**
+	 * Checks if a char is an ASCII letter.
+	 * @param c a char.
+	 * @return true for a letter.
+	 */
+	public static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+}
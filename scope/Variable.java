@@ -1,27 +1,108 @@
 package scope;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * This class represents a variable.
+ * The value itself is not kept, only the types it is a valid literal of (as bits), which is all the
+ * verification needs: whether the variable was assigned, and whether its value may be given to another type.
  */
 public class Variable {
-	public static final String INT_PATTERN = "-?[0-9]+ *;?";
-	public static final String CHAR_PATTERN = "'.' *;?";
-	public static final String BOOLEAN_PATTERN = "( *(true|false)|(-?[0-9]+(\\.[0-9]+)?)) *;?";
-	public static final String DOUBLE_PATTERN = "-?[0-9]+(\\.[0-9]+)?\\s*;?";
-	public static final String STRING_PATTERN = "\".*\" *;?";
 	public static final String INT = "int";
 	public static final String CHAR = "char";
 	public static final String BOOLEAN = "boolean";
 	public static final String DOUBLE = "double";
 	public static final String STRING = "String";
-	private static final HashMap<String, String> typesMap = new HashMap<>();
+	private static final int UNASSIGNED = 0;
+	private static final int ASSIGNED = 1 << Type.values().length;
+	private static final char END = ';';
+	private static final char MINUS = '-';
+	private static final char POINT = '.';
+	private static final char CHAR_QUOTE = '\'';
+	private static final char STRING_QUOTE = '"';
+	private static final int CHAR_LITERAL_LENGTH = 3;
+	private static final String TRUE = "true";
+	private static final String FALSE = "false";
+
+	/**
+	 * The types of variables.
+	 */
+	public enum Type {
+		INT(Variable.INT), CHAR(Variable.CHAR), BOOLEAN(Variable.BOOLEAN), DOUBLE(Variable.DOUBLE),
+		STRING(Variable.STRING);
+
+		private final String keyword;
+		private final int bit;
+
+		/**
+		 * This is the constructor of Type.
+		 * @param keyword the type's keyword.
+		 */
+		Type(String keyword) {
+			this.keyword = keyword;
+			this.bit = 1 << ordinal();
+		}
+
+		/**
+		 * Gets the type of a keyword.
+		 * @param keyword type keyword.
+		 * @return the type, or null for an unknown keyword.
+		 */
+		public static Type fromKeyword(String keyword) {
+			switch (keyword) {
+				case Variable.INT:
+					return INT;
+				case Variable.CHAR:
+					return CHAR;
+				case Variable.BOOLEAN:
+					return BOOLEAN;
+				case Variable.DOUBLE:
+					return DOUBLE;
+				case Variable.STRING:
+					return STRING;
+				default:
+					return null;
+			}
+		}
+
+		/**
+		 * Checks if a variable of another type may be assigned to a variable of this type.
+		 * @param other type of the assigned variable.
+		 * @return true for the same type, an int or double assigned to a boolean, or an int assigned to a double.
+		 */
+		public boolean isAssignableFrom(Type other) {
+			return this == other || (this == BOOLEAN && (other == INT || other == DOUBLE))
+					|| (this == DOUBLE && other == INT);
+		}
+
+		/**
+		 * Checks if a variable of this type may be used as a condition.
+		 * @return true for boolean, double and int.
+		 */
+		public boolean isCondition() {
+			return this == BOOLEAN || this == DOUBLE || this == INT;
+		}
+
+		/**
+		 * Checks if a literal is a valid value of this type.
+		 * @param value the literal.
+		 * @return true if valid.
+		 */
+		public boolean isValue(String value) {
+			return (getKinds(value) & bit) != 0;
+		}
+
+		/**
+		 * Gets the type's keyword.
+		 * @return the keyword.
+		 */
+		@Override
+		public String toString() {
+			return keyword;
+		}
+	}
 
 	private final String varName;
-	private final String varType;
-	private String varValue;
+	private final Type varType;
+	private int valueKinds = UNASSIGNED;
 	private boolean isConstant;
 
 	/**
@@ -34,32 +115,128 @@ public class Variable {
 	public Variable(String varType, String varValue, String varName, boolean isConstant)
 			throws AssignException {
 
-		setTypesMap();
-		this.varType = varType;
+		this.varType = Type.fromKeyword(varType);
 		this.varName = varName;
-		this.varValue = varValue;
 		this.isConstant = isConstant;
-		if (isValLegal()) {
-			throw new AssignException(varName);
+		if (varValue != null) {
+			setValue(varValue);
+		}
+	}
+
+	/**
+	 * This is the copy constructor of Variable.
+	 * @param other variable to copy.
+	 */
+	Variable(Variable other) {
+		this.varType = other.varType;
+		this.varName = other.varName;
+		this.valueKinds = other.valueKinds;
+		this.isConstant = other.isConstant;
+	}
+
+	/**
+	 * Gets the types a literal is a valid value of, with a single scan (the same as matching the pattern of
+	 * every type).
+	 * @param value the literal.
+	 * @return a bit for every type the literal is valid for, and the assigned bit.
+	 */
+	private static int getKinds(String value) {
+		int end = value.length();
+		if (end > 0 && value.charAt(end - 1) == END) {
+			end--;
+		}
+		int spacesEnd = end;
+		while (spacesEnd > 0 && value.charAt(spacesEnd - 1) == ' ') {
+			spacesEnd--;
+		}
+		int whitespaceEnd = spacesEnd;
+		while (whitespaceEnd > 0 && isWhitespace(value.charAt(whitespaceEnd - 1))) {
+			whitespaceEnd--;
+		}
+		int kinds = ASSIGNED;
+		int intEnd = scanDigits(value, value.length() > 0 && value.charAt(0) == MINUS ? 1 : 0);
+		if (intEnd == spacesEnd) {
+			kinds |= Type.INT.bit;
+		}
+		int numberEnd = intEnd;
+		if (intEnd != -1 && intEnd < value.length() && value.charAt(intEnd) == POINT) {
+			int fractionEnd = scanDigits(value, intEnd + 1);
+			if (fractionEnd != -1) {
+				numberEnd = fractionEnd;
+			}
+		}
+		if (intEnd == spacesEnd || numberEnd == spacesEnd || isBooleanWord(value, spacesEnd)) {
+			kinds |= Type.BOOLEAN.bit;
 		}
+		if (intEnd == whitespaceEnd || numberEnd == whitespaceEnd) {
+			kinds |= Type.DOUBLE.bit;
+		}
+		if (spacesEnd == CHAR_LITERAL_LENGTH && value.charAt(0) == CHAR_QUOTE && value.charAt(2) == CHAR_QUOTE
+				&& !isLineTerminator(value.charAt(1))) {
+			kinds |= Type.CHAR.bit;
+		}
+		if (spacesEnd >= 2 && value.charAt(0) == STRING_QUOTE && value.charAt(spacesEnd - 1) == STRING_QUOTE
+				&& !hasLineTerminator(value, 1, spacesEnd - 1)) {
+			kinds |= Type.STRING.bit;
+		}
+		return kinds;
+	}
+
+	/**
+	 * Scans the digits from a given index.
+	 * @return the index after the digits, or -1 if there is no digit.
+	 */
+	private static int scanDigits(String value, int start) {
+		int index = start;
+		while (index < value.length() && value.charAt(index) >= '0' && value.charAt(index) <= '9') {
+			index++;
+		}
+		return index == start ? -1 : index;
+	}
+
+	/**
+	 * Checks if a literal (up to the given end) is true or false, after spaces.
+	 */
+	private static boolean isBooleanWord(String value, int end) {
+		int start = 0;
+		while (start < end && value.charAt(start) == ' ') {
+			start++;
+		}
+		return value.startsWith(TRUE, start) && start + TRUE.length() == end
+				|| value.startsWith(FALSE, start) && start + FALSE.length() == end;
 	}
 
 	/**
-	 * Sets the types HashMap that maps types to valid patterns.
+	 * Checks if a character is whitespace, as \s of a pattern.
 	 */
-	private static void setTypesMap() {
-		typesMap.put(INT, INT_PATTERN);
-		typesMap.put(CHAR, CHAR_PATTERN);
-		typesMap.put(BOOLEAN, BOOLEAN_PATTERN);
-		typesMap.put(DOUBLE, DOUBLE_PATTERN);
-		typesMap.put(STRING, STRING_PATTERN);
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Checks if a character ends a line, so . of a pattern doesn't match it.
+	 */
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	/**
+	 * Checks if the characters between two indexes have a line terminator.
+	 */
+	private static boolean hasLineTerminator(String value, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (isLineTerminator(value.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
 	 * Gets variable type.
 	 * @return variable type.
 	 */
-	public String getType() {
+	public Type getType() {
 		return varType;
 	}
 
@@ -72,42 +249,51 @@ public class Variable {
 	}
 
 	/**
-	 * Sets variable value.
+	 * Sets variable value. An invalid value is still set (so the variable is assigned) before it is reported.
 	 * @param value vew value for variable.
 	 */
 	public void setValue(String value) throws AssignException {
-
-		this.varValue = value;
-		if (isValLegal()) {
+		valueKinds = getKinds(value);
+		if (!hasValueOf(varType)) {
 			throw new AssignException(varName);
 		}
 	}
 
+	/**
+	 * Sets the value of another variable as this variable's value.
+	 * @param other an assigned variable.
+	 */
+	public void setValue(Variable other) throws AssignException {
+		valueKinds = other.valueKinds;
+		if (!hasValueOf(varType)) {
+			throw new AssignException(varName);
+		}
+	}
 
 	/**
-	 * Gets variable value.
-	 * @return variable value.
+	 * Checks if the variable was assigned a value.
+	 * @return true if assigned.
 	 */
-	public String getValue() {
-		return varValue;
+	public boolean isAssigned() {
+		return valueKinds != UNASSIGNED;
 	}
 
 	/**
-	 * Checks if the variable value is legal.
-	 * @return true if legal, else false.
+	 * Checks if the variable's value is a valid value of a type.
+	 * @param type a type.
+	 * @return true if the value is valid for the type, false if not (or if not assigned).
 	 */
-	private boolean isValLegal() {
-		if (this.varValue == null) {
-			return false;
-		}
-		for (Map.Entry<String, String> item : typesMap.entrySet()) {
-			if (this.varType.equals(item.getKey())) {
-				return !this.varValue.matches(item.getValue());
-			}
-		}
-		return true;
+	public boolean hasValueOf(Type type) {
+		return type != null && (valueKinds & type.bit) != 0;
 	}
 
+	/**
+	 * Gets the state of the variable's value: whether it is assigned, and the types it is valid for.
+	 * @return bits of the value's state (two variables with the same bits verify the same).
+	 */
+	public int getValueKinds() {
+		return valueKinds;
+	}
 
 	/**
 	 * Sets the variable as constant or a non-constant.
@@ -125,4 +311,4 @@ public class Variable {
 		return isConstant;
 	}
 
-}
\ No newline at end of file
+}
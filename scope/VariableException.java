@@ -6,6 +6,6 @@ package scope;
 public class VariableException extends Throwable {
 
 	public VariableException(String s) {
-		super(s);
+		super(s, null, false, false);
 	}
 }
@@ -0,0 +1,248 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks the output of Sjavac in batch mode: one line "path code" per file (entries of an archive named
+ * "archive!/entry"), in input order, and the messages on stderr.
+ */
+public class BatchVerifierTest {
+    private static final String VALID = "int a = 1;\nvoid f() {\n    return;\n}\n";
+    private static final String INVALID = "void f() {\n    return 5;\n}\n";
+    private static final String NESTED_IF = "    if (b) {\n";
+    private static final String BLOCK_END = "    }\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void oneLinePerFileInInputOrder() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        Path invalid = write("invalid.sjava", INVALID);
+        Output output = run(invalid.toString(), valid.toString(), invalid.toString());
+        assertEquals(Arrays.asList(invalid + " 1", valid + " 0", invalid + " 1"), output.out);
+        assertEquals(Arrays.asList(invalid + ": Invalid return", invalid + ": Invalid return"), output.err);
+    }
+
+    @Test
+    public void directoryInPathOrder() throws IOException {
+        Path b = write("d/b.sjava", VALID);
+        Path z = write("d/a/z.sjava", INVALID);
+        Path a = write("d/sub/a.sjava", VALID);
+        write("d/readme.txt", VALID);
+        write("d/c.sjava.txt", VALID);
+        Output output = run(dir.resolve("d").toString());
+        assertEquals(Arrays.asList(z + " 1", b + " 0", a + " 0"), output.out);
+    }
+
+    @Test
+    public void argFile() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        Path invalid = write("list/invalid.sjava", INVALID);
+        Path list = write("list.txt", invalid + "\n\n  " + valid + "  \n" + dir.resolve("list") + "\n");
+        Output output = run(valid.toString(), "@" + list);
+        assertEquals(Arrays.asList(valid + " 0", invalid + " 1", valid + " 0", invalid + " 1"), output.out);
+    }
+
+    @Test
+    public void missingArgFile() {
+        Output output = run("@" + dir.resolve("none.txt"));
+        assertEquals(Arrays.asList("2"), output.out);
+        assertEquals(1, output.err.size());
+    }
+
+    @Test
+    public void missingFileAmongValidOnes() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        Path missing = dir.resolve("missing.sjava");
+        Output output = run(valid.toString(), missing.toString(), valid.toString());
+        assertEquals(Arrays.asList(valid + " 0", missing + " 2", valid + " 0"), output.out);
+        assertEquals(Arrays.asList(missing + ": " + missing + " (No such file or directory)"), output.err);
+    }
+
+    @Test
+    public void archiveEntriesInPathOrder() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        Path zip = archive("sources.zip", "src/b.sjava", VALID, "src/a/z.sjava", INVALID, "readme.txt", VALID,
+                "c.sjava", VALID);
+        Output output = run(zip.toString(), valid.toString());
+        assertEquals(Arrays.asList(zip + "!/c.sjava 0", zip + "!/src/a/z.sjava 1", zip + "!/src/b.sjava 0",
+                valid + " 0"), output.out);
+        assertEquals(Arrays.asList(zip + "!/src/a/z.sjava: Invalid return"), output.err);
+    }
+
+    @Test
+    public void singleJarIsABatch() throws IOException {
+        Path jar = archive("sources.jar", "x.sjava", INVALID);
+        Output output = run("--max-errors", "5", jar.toString());
+        assertEquals(Arrays.asList(jar + "!/x.sjava 1"), output.out);
+        assertEquals(jar + "!/x.sjava: line 3: ReturnException: Invalid return", output.err.get(0));
+    }
+
+    @Test
+    public void unreadableFileAmongValidOnes() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        Path unreadable = write("unreadable.sjava", VALID);
+        assumeTrue(unreadable.toFile().setReadable(false, false) && !Files.isReadable(unreadable),
+                "the file is readable anyway (run as root)");
+        Output output = run(valid.toString(), unreadable.toString(), valid.toString());
+        assertEquals(Arrays.asList(valid + " 0", unreadable + " 2", valid + " 0"), output.out);
+        assertEquals(1, output.err.size());
+    }
+
+    @Test
+    public void pathUnderAFileAmongValidOnes() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        Path underFile = valid.resolve("a.sjava"); // can't be read, even by root
+        Output output = run(valid.toString(), underFile.toString(), valid.toString());
+        assertEquals(Arrays.asList(valid + " 0", underFile + " 2", valid + " 0"), output.out);
+        assertEquals(1, output.err.size());
+    }
+
+    @Test
+    public void deeplyNestedFile() throws IOException {
+        Path ok = write("ok.sjava", VALID);
+        Path nested = write("nested.sjava", nested(3000));
+        Path deep = write("deep.sjava", nested(100_000));
+        Output output = run(ok.toString(), nested.toString(), deep.toString(), ok.toString());
+        assertEquals(Arrays.asList(ok + " 0", nested + " 0", deep + " 0", ok + " 0"), output.out);
+        assertEquals(Collections.emptyList(), output.err);
+    }
+
+    @Test
+    public void deeplyNestedFileInParallel() throws IOException {
+        Path deep = write("deep.sjava", nested(100_000) + nested(100_000).replace("void f(", "void g("));
+        Output output = run("--parallel", deep.toString());
+        assertEquals(Arrays.asList("0"), output.out);
+        assertEquals(Collections.emptyList(), output.err);
+    }
+
+    @Test
+    public void stepLimitStopsAHugeLine() throws IOException {
+        StringBuilder line = new StringBuilder("int a = (");
+        while (line.length() < 1 << 20) {
+            line.append("a + ");
+        }
+        Path huge = write("huge.sjava", line.append("\n").toString());
+        // the limit is reached while the line is read, before its brackets are checked (that gives code 1)
+        Output output = run("--max-errors", "10", "--step-limit", "1000", huge.toString());
+        assertEquals(Arrays.asList("2"), output.out);
+        assertEquals(Arrays.asList("line 0: BudgetException: Verification budget exceeded: more than 1000 steps"),
+                output.err);
+    }
+
+    /**
+     * Writes a file in the test's directory.
+     *
+     * @param name   the file name, under the directory.
+     * @param source the file's contents.
+     * @return the path of the file.
+     */
+    Path write(String name, String source) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Writes a zip archive in the test's directory.
+     *
+     * @param name            the archive's name, under the directory.
+     * @param namesAndSources the name of every entry, followed by its contents.
+     * @return the path of the archive.
+     */
+    Path archive(String name, String... namesAndSources) throws IOException {
+        Path file = dir.resolve(name);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < namesAndSources.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(namesAndSources[i]));
+                zip.write(namesAndSources[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Gets a valid method with the given number of nested if blocks.
+     */
+    static String nested(int depth) {
+        StringBuilder source = new StringBuilder("void f(boolean b) {\n");
+        for (int i = 0; i < depth; i++) {
+            source.append(NESTED_IF);
+        }
+        for (int i = 0; i < depth; i++) {
+            source.append(BLOCK_END);
+        }
+        return source.append("    return;\n}\n").toString();
+    }
+
+    /**
+     * Runs Sjavac, without the result cache, and gets what it printed.
+     *
+     * @param args the arguments, after --no-cache.
+     * @return the lines printed on stdout and stderr.
+     */
+    static Output run(String... args) {
+        String[] withoutCache = new String[args.length + 1];
+        withoutCache[0] = "--no-cache";
+        System.arraycopy(args, 0, withoutCache, 1, args.length);
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(outBytes, true, StandardCharsets.UTF_8.name()));
+            System.setErr(new PrintStream(errBytes, true, StandardCharsets.UTF_8.name()));
+            Sjavac.main(withoutCache);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return new Output(lines(outBytes), lines(errBytes));
+    }
+
+    private static List<String> lines(ByteArrayOutputStream bytes) {
+        List<String> lines = new ArrayList<>();
+        for (String line : new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\\R")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * The lines Sjavac printed.
+     */
+    static final class Output {
+        final List<String> out;
+        final List<String> err;
+
+        Output(List<String> out, List<String> err) {
+            this.out = out;
+            this.err = err;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the output of --max-errors: every error of a file up to the cap, with its source line (and the file's
+ * name in batch mode), and the original output without it.
+ */
+public class DiagnosticsModeTest {
+    private static final String INVALID = "int a1 = true;\nint a2 = true;\n// not a line of code\nint a3 = true;\n"
+            + "int a4 = true;\n";
+    private static final String VALID = "int a = 1;\nvoid f() {\n    return;\n}\n";
+    private static final String ERROR = "AssignException: Invalid assignment in variable: a";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void errorsUpToTheCap() throws IOException {
+        Path invalid = write("invalid.sjava", INVALID);
+        BatchVerifierTest.Output output = BatchVerifierTest.run("--max-errors", "3", invalid.toString());
+        assertEquals(Arrays.asList("1"), output.out);
+        assertEquals(Arrays.asList("line 1: " + ERROR + "1", "line 2: " + ERROR + "2", "line 4: " + ERROR + "3"),
+                output.err);
+    }
+
+    @Test
+    public void firstMessageWithoutTheOption() throws IOException {
+        Path invalid = write("invalid.sjava", INVALID);
+        BatchVerifierTest.Output output = BatchVerifierTest.run(invalid.toString());
+        assertEquals(Arrays.asList("1"), output.out);
+        assertEquals(Arrays.asList("Invalid assignment in variable: a1"), output.err);
+    }
+
+    @Test
+    public void errorsOfEveryFileInBatchMode() throws IOException {
+        Path invalid = write("invalid.sjava", INVALID);
+        Path valid = write("valid.sjava", VALID);
+        BatchVerifierTest.Output output = BatchVerifierTest.run("--max-errors", "2", invalid.toString(),
+                valid.toString());
+        assertEquals(Arrays.asList(invalid + " 1", valid + " 0"), output.out);
+        assertEquals(Arrays.asList(invalid + ": line 1: " + ERROR + "1", invalid + ": line 2: " + ERROR + "2"),
+                output.err);
+    }
+
+    @Test
+    public void capMustBePositive() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        BatchVerifierTest.Output output = BatchVerifierTest.run("--max-errors", "0", valid.toString());
+        assertEquals(Arrays.asList("2"), output.out);
+        assertEquals(Arrays.asList("Invalid value for --max-errors: 0"), output.err);
+    }
+
+    @Test
+    public void validFileHasNoErrors() throws IOException {
+        Path valid = write("valid.sjava", VALID);
+        BatchVerifierTest.Output output = BatchVerifierTest.run("--max-errors", "3", valid.toString());
+        assertEquals(Arrays.asList("0"), output.out);
+        assertEquals(Collections.emptyList(), output.err);
+    }
+
+    private Path write(String name, String source) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,97 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that re-verifying an edited file verifies only the methods the edit touches, and gives the errors that
+ * verifying the whole file gives (the original verifier's results, along the edits of the samples).
+ */
+public class IncrementalVerifierTest {
+    private static final char VARIANT_SEPARATOR = '_';
+    private static final char SUFFIX_START = '.';
+    private static final int MAX_ERRORS = 100;
+    private static final String FILE = "int g = 1;\n"
+            + "String s = \"s\";\n"
+            + "void a() {\n"
+            + "    int x = g;\n"
+            + "    return;\n"
+            + "}\n"
+            + "void b() {\n"
+            + "    int y = 2;\n"
+            + "    return;\n"
+            + "}\n"
+            + "void c() {\n"
+            + "    String t = s;\n"
+            + "    return;\n"
+            + "}\n";
+
+    @Test
+    public void reverifiesOnlyTheEditedMethod() {
+        IncrementalVerifier verifier = new IncrementalVerifier();
+        assertEquals("0", RegressionCorpus.show(verifier.verify(FILE, MAX_ERRORS)));
+        assertEquals(3, verifier.getVerifiedMethods());
+
+        String edited = FILE.replace("int y = 2;", "int y = \"two\";");
+        Sjavac.Result result = verifier.verify(edited, MAX_ERRORS);
+        assertEquals(1, verifier.getVerifiedMethods());
+        assertEquals("line 8: AssignException: Invalid assignment in variable: y", result.getReport(true));
+        assertEquals(Sjavac.verifySource(edited, MAX_ERRORS).getReport(true), result.getReport(true));
+    }
+
+    @Test
+    public void keepsTheErrorOfAnUnchangedMethodAtItsNewLine() {
+        IncrementalVerifier verifier = new IncrementalVerifier();
+        String invalid = FILE.replace("int x = g;", "int x = s;");
+        assertEquals("line 4: AssignException: Invalid assignment in variable: x",
+                verifier.verify(invalid, MAX_ERRORS).getReport(true));
+
+        // a comment above every method moves them, and only c changes
+        String edited = "// moved\n" + invalid.replace("String t = s;", "String t = \"t\";");
+        Sjavac.Result result = verifier.verify(edited, MAX_ERRORS);
+        assertEquals(1, verifier.getVerifiedMethods());
+        assertEquals("line 5: AssignException: Invalid assignment in variable: x", result.getReport(true));
+        assertEquals(Sjavac.verifySource(edited, MAX_ERRORS).getReport(true), result.getReport(true));
+    }
+
+    @Test
+    public void reverifiesTheMethodsThatUseAChangedGlobal() {
+        IncrementalVerifier verifier = new IncrementalVerifier();
+        verifier.verify(FILE, MAX_ERRORS);
+
+        String edited = FILE.replace("int g = 1;", "double g = 1.5;");
+        Sjavac.Result result = verifier.verify(edited, MAX_ERRORS);
+        assertEquals(1, verifier.getVerifiedMethods()); // a reads g, b and c don't
+        assertEquals(Sjavac.verifySource(edited, MAX_ERRORS).getReport(true), result.getReport(true));
+        assertEquals("1", result.getCode());
+    }
+
+    @Test
+    public void editedSamples() throws IOException {
+        // a sample is followed by its variants (lines dropped or repeated), each an edit of the one before
+        IncrementalVerifier verifier = null;
+        String sample = null;
+        for (Path file : RegressionCorpus.files("corpus")) {
+            String name = getSample(file);
+            if (!name.equals(sample)) {
+                verifier = new IncrementalVerifier();
+                sample = name;
+            }
+            assertEquals(RegressionCorpus.expected(file),
+                    RegressionCorpus.show(verifier.verify(RegressionCorpus.read(file), 1)), file.toString());
+        }
+    }
+
+    /**
+     * Gets the name of the sample a file of the corpus was made from.
+     */
+    private static String getSample(Path file) {
+        String name = file.getFileName().toString();
+        int variant = name.indexOf(VARIANT_SEPARATOR);
+        return name.substring(0, variant != -1 ? variant : name.indexOf(SUFFIX_START));
+    }
+}
@@ -0,0 +1,89 @@
+package oop.ex6.main;
+
+import scope.Budget;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the arguments of a method are set once and their error is reported to the callers that need them:
+ * once if some arguments were set, at every call if none was. The files of test/regression/calls (methods with
+ * valid and invalid signatures called many times) give the results the original verifier gave, which set the
+ * arguments at every call.
+ */
+public class MethodArgsTest {
+    private static final String CALLS = "calls";
+    private static final int WORKERS = 4;
+    private static final int MAX_ERRORS = 1000;
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    public static void startPool() {
+        pool = new ForkJoinPool(WORKERS);
+    }
+
+    @AfterAll
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void argumentErrorReportedOnce() throws Exception {
+        // the first argument is set, so only the first call that needs the arguments gets the error
+        Path file = write(callers("int a, int a"));
+        String report = "line 2: SameNameException: Variable int a already exists in this scope";
+        assertEquals(report, Sjavac.verify(file, MAX_ERRORS, null, null).getReport(true));
+        assertEquals(report, Sjavac.verify(file, MAX_ERRORS, null, pool).getReport(true));
+        VerificationResult result = new Verifier(MAX_ERRORS, false, Budget.UNLIMITED, Budget.UNLIMITED).verify(file);
+        assertEquals(1, result.getDiagnostics().size());
+        assertEquals("SameNameException", result.getKind());
+    }
+
+    @Test
+    public void argumentErrorForEveryCallWhileNoArgumentIsSet() throws Exception {
+        Path file = write(callers("b, int a"));
+        String error = ": AssignException: Invalid assignment in variable: b";
+        String report = "line 2" + error + "\nline 5" + error + "\nline 9" + error + "\nline 10" + error;
+        assertEquals(report, Sjavac.verify(file, MAX_ERRORS, null, null).getReport(true));
+        assertEquals(report, Sjavac.verify(file, MAX_ERRORS, null, pool).getReport(true));
+    }
+
+    @Test
+    public void allErrors() throws Exception {
+        for (Path file : RegressionCorpus.files(CALLS)) {
+            Sjavac.Result sequential = Sjavac.verify(file, MAX_ERRORS, null, null);
+            Sjavac.Result parallel = Sjavac.verify(file, MAX_ERRORS, null, pool);
+            assertEquals(RegressionCorpus.expected(file), RegressionCorpus.show(sequential), file.toString());
+            assertEquals(sequential.getReport(true), parallel.getReport(true), file.toString());
+        }
+    }
+
+    /**
+     * Gets a file where a method with the given arguments is called before it is declared and twice after it.
+     */
+    private static String callers(String arguments) {
+        return "void g() {\n    f(1, 2);\n    return;\n}\n"
+                + "void f(" + arguments + ") {\n    return;\n}\n"
+                + "void h() {\n    f(3, 4);\n    f(5, 6);\n    return;\n}\n";
+    }
+
+    private Path write(String source) throws IOException {
+        Path file = dir.resolve("calls.sjava");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
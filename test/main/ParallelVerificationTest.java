@@ -0,0 +1,100 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that verifying the method bodies of a file in parallel gives the same errors, in the same order and cut
+ * at the same cap, as verifying them one by one.
+ */
+public class ParallelVerificationTest {
+    private static final int WORKERS = 4;
+    private static final int MAX_ERRORS = 1000;
+    private static final int CAP = 3;
+    private static final int METHODS = 8;
+    private static final int SLOW_LINES = 5000;
+    private static final String BAD_ASSIGNMENT = "AssignException: Invalid assignment in variable: bad";
+
+    @TempDir
+    Path dir;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    public static void startPool() {
+        pool = new ForkJoinPool(WORKERS);
+    }
+
+    @AfterAll
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void errorsInDeclarationOrderAtTheCap() throws Exception {
+        Path file = write(slowFirstMethod());
+        // the first method is the slowest, so the others finish before it
+        Sjavac.Result sequential = Sjavac.verify(file, CAP, null, null);
+        Sjavac.Result parallel = Sjavac.verify(file, CAP, null, pool);
+        assertEquals(sequential.getReport(true), parallel.getReport(true));
+        assertEquals(Arrays.asList(error(SLOW_LINES + 2), error(SLOW_LINES + 6), error(SLOW_LINES + 10)),
+                Arrays.asList(parallel.getReport(true).split("\n")));
+    }
+
+    @Test
+    public void failFastStopsAtTheFirstMethod() throws Exception {
+        Path file = write(slowFirstMethod());
+        Sjavac.Result parallel = Sjavac.verify(file, 1, null, pool);
+        assertEquals(error(SLOW_LINES + 2), parallel.getReport(true));
+        assertEquals(Sjavac.verify(file, 1, null, null).getReport(true), parallel.getReport(true));
+    }
+
+    @Test
+    public void allErrors() throws Exception {
+        for (Path file : RegressionCorpus.allFiles()) {
+            Sjavac.Result sequential = Sjavac.verify(file, MAX_ERRORS, null, null);
+            Sjavac.Result parallel = Sjavac.verify(file, MAX_ERRORS, null, pool);
+            assertEquals(sequential.getReport(true), parallel.getReport(true), file.toString());
+            assertEquals(RegressionCorpus.show(sequential), RegressionCorpus.show(parallel), file.toString());
+        }
+    }
+
+    /**
+     * Gets a file of methods that each have an invalid line, the first after many valid ones.
+     */
+    private static String slowFirstMethod() {
+        StringBuilder source = new StringBuilder("void m0() {\n");
+        for (int i = 0; i < SLOW_LINES; i++) {
+            source.append("    int v").append(i).append(" = ").append(i).append(";\n");
+        }
+        source.append("    int bad = true;\n    return;\n}\n");
+        for (int method = 1; method < METHODS; method++) {
+            source.append("void m").append(method).append("() {\n    int bad = true;\n    return;\n}\n");
+        }
+        return source.toString();
+    }
+
+    /**
+     * Gets the report line of an invalid line.
+     */
+    private static String error(int line) {
+        return "line " + line + ": " + BAD_ASSIGNMENT;
+    }
+
+    private Path write(String source) throws IOException {
+        Path file = dir.resolve("methods.sjava");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
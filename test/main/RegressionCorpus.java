@@ -0,0 +1,110 @@
+package oop.ex6.main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The sjava files of test/regression with the results the original verifier gave for them (code and message, as
+ * printed for a single file), in expected.properties by the path of the file under test/regression.
+ * The files are the samples of tests with lines dropped or repeated (corpus), random lines of sjava
+ * (fuzz), comments and line terminators (comments) and methods called many times, with valid and invalid
+ * signatures (calls).
+ * Files the original verifier crashed on are left out.
+ */
+final class RegressionCorpus {
+    static final Path ROOT = Paths.get("test", "regression");
+    private static final String EXPECTED = "expected.properties";
+    private static final String SOURCE_SUFFIX = ".sjava";
+    private static final String SEPARATOR = " ";
+
+    private static Properties expected;
+
+    private RegressionCorpus() {
+    }
+
+    /**
+     * Gets the files of a directory of the corpus.
+     *
+     * @param dir the directory, under test/regression.
+     * @return the files, sorted by path.
+     */
+    static List<Path> files(String dir) throws IOException {
+        try (Stream<Path> files = Files.list(ROOT.resolve(dir))) {
+            return files.filter(file -> file.toString().endsWith(SOURCE_SUFFIX)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Gets the files of every directory of the corpus.
+     *
+     * @return the files, sorted by path.
+     */
+    static List<Path> allFiles() throws IOException {
+        List<Path> all = new ArrayList<>();
+        for (String dir : new String[]{"corpus", "fuzz", "comments", "calls"}) {
+            all.addAll(files(dir));
+        }
+        return all;
+    }
+
+    /**
+     * Gets the result the original verifier gave for a file.
+     *
+     * @param file a file of the corpus.
+     * @return the code, and the message after a space if there is one.
+     */
+    static synchronized String expected(Path file) throws IOException {
+        if (expected == null) {
+            expected = new Properties();
+            try (InputStream in = Files.newInputStream(ROOT.resolve(EXPECTED))) {
+                expected.load(in);
+            }
+        }
+        String result = expected.getProperty(ROOT.relativize(file).toString().replace('\\', '/'));
+        if (result == null) {
+            throw new IllegalStateException("No expected result for " + file);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a file of the corpus, the same as the verifier does.
+     *
+     * @param file a file of the corpus.
+     * @return the source.
+     */
+    static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), Charset.defaultCharset());
+    }
+
+    /**
+     * Shows a result the way the expected results are written.
+     *
+     * @param code    code of the result.
+     * @param message message of the result, or null.
+     * @return the code, and the message after a space if there is one.
+     */
+    static String show(String code, String message) {
+        return message == null ? code : code + SEPARATOR + message;
+    }
+
+    /**
+     * Shows a result the way the expected results are written.
+     *
+     * @param result the result.
+     * @return the code, and the message after a space if there is one.
+     */
+    static String show(Sjavac.Result result) {
+        return show(result.getCode(), result.getMessage());
+    }
+}
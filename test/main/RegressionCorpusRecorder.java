@@ -0,0 +1,109 @@
+package oop.ex6.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records expected.properties of test/regression: the code and message the verifier on the class path prints for
+ * every sjava file under the given directory. It is run with the original verifier (the baseline commit) first on
+ * the class path, so the corpus keeps the results the verifier gave before any change:
+ * <pre>
+ * git worktree add /tmp/baseline $(git rev-list --max-parents=0 HEAD)
+ * mv /tmp/baseline/main/MainVerifier.java /tmp/baseline/main/Sjavac.java   # the public class in it is Sjavac
+ * mkdir /tmp/baseline/out
+ * javac -d /tmp/baseline/out $(find /tmp/baseline/main /tmp/baseline/parsing /tmp/baseline/scope -name '*.java')
+ * mvn test-compile
+ * java -Dfile.encoding=UTF-8 -cp /tmp/baseline/out:target/test-classes oop.ex6.main.RegressionCorpusRecorder \
+ *     test/regression test/regression/expected.properties
+ * </pre>
+ * A file the verifier crashes on (or prints anything but a code and a message for) gets no result; it is listed,
+ * and should be left out of the corpus.
+ */
+public final class RegressionCorpusRecorder {
+    private static final String SOURCE_SUFFIX = ".sjava";
+
+    private RegressionCorpusRecorder() {
+    }
+
+    /**
+     * Records the results.
+     *
+     * @param args the corpus directory and the properties file to write.
+     */
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args[0]);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(file -> file.toString().endsWith(SOURCE_SUFFIX)).sorted()
+                    .collect(Collectors.toList());
+        }
+        Properties expected = new Properties();
+        List<String> excluded = new ArrayList<>();
+        for (Path file : files) {
+            String key = root.relativize(file).toString().replace('\\', '/');
+            String[] printed = run(file);
+            if (printed == null || !printed[0].matches("[01]\\n")) {
+                excluded.add(key);
+                continue;
+            }
+            String message = printed[1].isEmpty() ? null : printed[1].substring(0, printed[1].length() - 1);
+            expected.setProperty(key, RegressionCorpus.show(printed[0].trim(), message));
+        }
+        write(expected, Paths.get(args[1]));
+        for (String key : excluded) {
+            System.out.println("excluded " + key);
+        }
+        System.out.println("recorded " + expected.size());
+    }
+
+    /**
+     * Runs the verifier on a single file.
+     *
+     * @param file the file.
+     * @return what it printed on stdout and stderr, or null if it crashed.
+     */
+    private static String[] run(Path file) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(outBytes, true, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(errBytes, true, StandardCharsets.UTF_8));
+            Sjavac.main(new String[]{file.toString()});
+        } catch (RuntimeException | StackOverflowError e) {
+            return null;
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return new String[]{outBytes.toString(StandardCharsets.UTF_8), errBytes.toString(StandardCharsets.UTF_8)};
+    }
+
+    /**
+     * Writes the results sorted by key and without the date comment, so recording them again changes nothing.
+     */
+    private static void write(Properties expected, Path path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        expected.store(bytes, null);
+        List<String> lines = new ArrayList<>();
+        for (String line : bytes.toString(StandardCharsets.ISO_8859_1).split("\n")) {
+            if (!line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines);
+        Files.write(path, lines, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,73 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the result cache gives back the results put in it, and that evicting deletes only its own files.
+ */
+public class ResultCacheTest {
+    private static final int MAX_ERRORS = 1;
+    private static final long LONG_AGO = 24 * 60 * 60 * 1000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void putAndGet() {
+        ResultCache cache = ResultCache.open(dir, 10);
+        assertNotNull(cache);
+        String key = cache.getKey(source("void f() {\n}\n"), MAX_ERRORS);
+        assertNull(cache.get(key));
+        cache.put(key, new Sjavac.Result(Sjavac.INVALID, "no return", Collections.emptyList()));
+        Sjavac.Result result = cache.get(key);
+        assertEquals(Sjavac.INVALID, result.getCode());
+        assertEquals("no return", result.getMessage());
+        assertFalse(key.equals(cache.getKey(source("void f() {\n}\n"), MAX_ERRORS + 1)));
+    }
+
+    @Test
+    public void evictKeepsOtherFiles() throws Exception {
+        List<Path> others = Stream.of("notes.txt", "a.sjava", "ABCDEF.tmp", "0".repeat(63), "0".repeat(64) + ".bak")
+                .map(dir::resolve).collect(Collectors.toList());
+        for (Path other : others) {
+            Files.write(other, "keep".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(other, FileTime.fromMillis(0));
+        }
+        ResultCache cache = ResultCache.open(dir, 1);
+        for (int i = 0; i < 3; i++) {
+            cache.put(cache.getKey(source("int a = " + i + ";\n"), MAX_ERRORS),
+                    new Sjavac.Result(Sjavac.VALID, null, Collections.emptyList()));
+        }
+        Path stale = Files.createTempFile(dir, "f".repeat(64), ".tmp");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - LONG_AGO));
+        cache.evict();
+        for (Path other : others) {
+            assertTrue(Files.exists(other), other.toString());
+        }
+        assertFalse(Files.exists(stale));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().matches("[0-9a-f]{64}")).count());
+        }
+    }
+
+    private static ByteBuffer source(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,116 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the stats of --stats: the JSON printed for a run, the MXBean of the daemon and its JFR events.
+ */
+public class StatsTest {
+    private static final String SOURCE = "int a = 1;\nvoid f() {\n    int b = a;\n    f();\n    return;\n}\n";
+    private static final String COUNTS = "\"counts\": {\"files\": %d, \"cacheHits\": 0, \"lines\": %d, \"scopes\": %d, "
+            + "\"methods\": %d, \"variables\": %d, \"calls\": %d}}";
+    private static final String EVENT = "oop.ex6.main.Verification";
+    private static final String REQUEST = "s";
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    public void stopRecording() {
+        Sjavac.setRecordStats(false);
+    }
+
+    @Test
+    public void printedForAFile() throws IOException {
+        Path file = write("a.sjava");
+        BatchVerifierTest.Output output = BatchVerifierTest.run("--stats", file.toString());
+        assertEquals(Arrays.asList("0"), output.out);
+        assertEquals(1, output.err.size());
+        String json = output.err.get(0);
+        for (String phase : new String[]{"read", "clean", "brackets", "scopes", "parse"}) {
+            assertTrue(json.contains("\"" + phase + "\": {\"nanos\": "), json);
+        }
+        assertTrue(json.endsWith(String.format(COUNTS, 1, 6, 2, 1, 2, 1)), json);
+    }
+
+    @Test
+    public void summedInBatchMode() throws IOException {
+        Path first = write("a.sjava");
+        Path second = write("b.sjava");
+        BatchVerifierTest.Output output = BatchVerifierTest.run("--stats", first.toString(), second.toString());
+        assertEquals(Arrays.asList(first + " 0", second + " 0"), output.out);
+        assertTrue(output.err.get(0).endsWith(String.format(COUNTS, 2, 12, 4, 2, 4, 2)), output.err.get(0));
+    }
+
+    @Test
+    public void summedByTheMonitor() throws Exception {
+        Sjavac.setRecordStats(true);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(StatsMonitor.OBJECT_NAME);
+        StatsMonitor monitor = StatsMonitor.register();
+        try {
+            StatsMonitorMXBean bean = JMX.newMXBeanProxy(server, name, StatsMonitorMXBean.class);
+            monitor.record(REQUEST, () -> Sjavac.verifySource(SOURCE, 1));
+            monitor.record(REQUEST, () -> Sjavac.verifySource(SOURCE, 1));
+            assertEquals(12L, bean.getCounts().get("lines"));
+            assertEquals(2L, bean.getCounts().get("methods"));
+            assertTrue(bean.getPhaseNanos().get("parse") > 0);
+            assertEquals(monitor.getJson(), bean.getJson());
+            bean.reset();
+            assertEquals(0L, bean.getCounts().get("lines"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void eventForEveryRequest() throws Exception {
+        Sjavac.setRecordStats(true);
+        StatsMonitor monitor = new StatsMonitor();
+        Path dump = dir.resolve("verification.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENT).withoutThreshold();
+            recording.start();
+            monitor.record(REQUEST, () -> Sjavac.verifySource(SOURCE, 1));
+            monitor.record(REQUEST, () -> Sjavac.verifySource("int a = true;\n", 1));
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals(EVENT)).collect(Collectors.toList());
+        assertEquals(2, events.size());
+        assertEquals(REQUEST, events.get(0).getString("request"));
+        assertEquals(Sjavac.VALID, events.get(0).getString("code"));
+        assertEquals(6, events.get(0).getLong("lines"));
+        assertEquals(1, events.get(0).getLong("methods"));
+        assertEquals(Sjavac.INVALID, events.get(1).getString("code"));
+    }
+
+    private Path write(String name) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
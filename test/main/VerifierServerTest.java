@@ -0,0 +1,135 @@
+package oop.ex6.main;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the daemon protocol: requests answered in order, STOP only with the token, and the client trusting only
+ * the daemon that wrote the token.
+ */
+public class VerifierServerTest {
+    private static final String VALID = "int a = 1;\nvoid f() {\n    return;\n}\n";
+    private static final String INVALID = "void f() {\n    return 5;\n}\n";
+    private static final int MAX_ERRORS = 10;
+    private static final long STOP_SECONDS = 10;
+
+    private final ExecutorService serving = Executors.newSingleThreadExecutor();
+    private int port;
+
+    @BeforeEach
+    public void findPort() throws IOException {
+        try (ServerSocket free = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            port = free.getLocalPort();
+        }
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        serving.shutdownNow();
+        Files.deleteIfExists(VerifierServer.getTokenPath(port));
+    }
+
+    @Test
+    public void verifiesSources() throws Exception {
+        Future<?> server = start();
+        Sjavac.Result valid = SjavacClient.request(port, VerifierServer.VERIFY_SOURCE, 1, VALID);
+        assertEquals(Sjavac.VALID, valid.getCode());
+        assertNull(valid.getMessage());
+        Sjavac.Result invalid = SjavacClient.request(port, VerifierServer.VERIFY_SOURCE, 1, INVALID);
+        assertEquals(Sjavac.INVALID, invalid.getCode());
+        assertEquals("Invalid return", invalid.getMessage());
+        Sjavac.Result report = SjavacClient.request(port, VerifierServer.VERIFY_SOURCE, MAX_ERRORS, INVALID);
+        assertTrue(report.getMessage().startsWith("line 3: ReturnException: Invalid return\nline 2: "),
+                report.getMessage());
+        Sjavac.Result edit = SjavacClient.request(port, VerifierServer.VERIFY_EDIT, 1, "/a.sjava\n" + INVALID);
+        assertEquals(Sjavac.INVALID, edit.getCode());
+        stop(server);
+    }
+
+    @Test
+    public void stopNeedsTheToken() throws Exception {
+        Future<?> server = start();
+        Sjavac.Result denied = SjavacClient.request(port, VerifierServer.STOP, 1, "0".repeat(64));
+        assertEquals(Sjavac.EXCEPTION, denied.getCode());
+        assertEquals(Sjavac.VALID, SjavacClient.request(port, VerifierServer.VERIFY_SOURCE, 1, VALID).getCode());
+        stop(server);
+        assertTrue(server.isDone());
+    }
+
+    @Test
+    public void impostorIsNotTrusted() throws Exception {
+        Future<?> server = start();
+        byte[] token = Files.readAllBytes(VerifierServer.getTokenPath(port));
+        stop(server);
+        Files.write(VerifierServer.getTokenPath(port), token); // left behind by a server that was killed
+        try (ServerSocket impostor = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            Future<?> answering = serving.submit(() -> answerValid(impostor));
+            IOException error = assertThrows(IOException.class,
+                    () -> SjavacClient.request(port, VerifierServer.VERIFY_SOURCE, 1, INVALID));
+            assertTrue(error.getMessage().startsWith("Not the server"), error.getMessage());
+            answering.get(STOP_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void noTokenNoDaemon() {
+        assertThrows(IOException.class, () -> SjavacClient.request(port, VerifierServer.VERIFY_SOURCE, 1, VALID));
+    }
+
+    /**
+     * Starts a server on the port, serving on another thread.
+     *
+     * @return the serving thread's task, done once the server stopped.
+     */
+    private Future<?> start() throws IOException {
+        VerifierServer server = new VerifierServer(port, null);
+        return serving.submit(() -> {
+            server.serve();
+            return null;
+        });
+    }
+
+    /**
+     * Stops a server with its token, and waits for it to stop.
+     */
+    private void stop(Future<?> server) throws Exception {
+        String token = new String(Files.readAllBytes(VerifierServer.getTokenPath(port)), StandardCharsets.UTF_8);
+        assertEquals(Sjavac.VALID, SjavacClient.request(port, VerifierServer.STOP, 1, token).getCode());
+        server.get(STOP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Answers one connection the way a process that doesn't know the token would: anything for the proof, then
+     * "valid".
+     */
+    private static Void answerValid(ServerSocket impostor) throws IOException {
+        try (Socket socket = impostor.accept()) {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            in.readNBytes(VerifierServer.CHALLENGE_BYTES);
+            out.write(new byte[VerifierServer.CHALLENGE_BYTES]);
+            out.write(new byte[]{0, 1, '0', -1, -1, -1, -1});
+            out.flush();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+package oop.ex6.main;
+
+import scope.Budget;
+import scope.Diagnostics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the fields of the results the Verifier gives, and that it gives the results the original verifier gave
+ * for the regression files, whichever way the source is given, and when one instance verifies from many threads
+ * at once.
+ */
+public class VerifierTest {
+    private static final int THREADS = 4;
+    private static final int MAX_ERRORS = 100;
+    private static final long STEPS = 5;
+
+    private final Verifier verifier = new Verifier();
+
+    @Test
+    public void everyWayOfGivingTheSource() throws Exception {
+        Verifier parallel = new Verifier(Diagnostics.FAIL_FAST, true, Budget.UNLIMITED, Budget.UNLIMITED);
+        for (Path file : RegressionCorpus.allFiles()) {
+            String expected = RegressionCorpus.expected(file);
+            String source = RegressionCorpus.read(file);
+            assertEquals(expected, show(verifier.verify(file)), file.toString());
+            assertEquals(expected, show(verifier.verify(source)), file + " as text");
+            assertEquals(expected, show(verifier.verify(new StringReader(source))), file + " from a reader");
+            assertEquals(expected, show(parallel.verify(file)), file + " in parallel");
+        }
+    }
+
+    @Test
+    public void validResult() {
+        VerificationResult result = verifier.verify("int a = 1;\nvoid f() {\n    a = 2;\n    return;\n}\n");
+        assertEquals(VerificationResult.Verdict.VALID, result.getVerdict());
+        assertTrue(result.isValid());
+        assertNull(result.getKind());
+        assertEquals(0, result.getLine());
+        assertNull(result.getMessage());
+        assertEquals(Collections.emptyList(), result.getDiagnostics());
+    }
+
+    @Test
+    public void invalidResult() {
+        Verifier allErrors = new Verifier(MAX_ERRORS, false, Budget.UNLIMITED, Budget.UNLIMITED);
+        VerificationResult result = allErrors.verify("// two errors\nint a = true;\nvoid f() {\n    b = 2;\n"
+                + "    return;\n}\n");
+        assertEquals(VerificationResult.Verdict.INVALID, result.getVerdict());
+        assertFalse(result.isValid());
+        assertEquals("AssignException", result.getKind());
+        assertEquals(2, result.getLine());
+        assertEquals("Invalid assignment in variable: a", result.getMessage());
+        List<Diagnostics.Diagnostic> diagnostics = result.getDiagnostics();
+        assertEquals(2, diagnostics.size());
+        assertEquals(4, diagnostics.get(1).getLineNumber());
+        assertEquals("AssignException", diagnostics.get(1).getKind());
+    }
+
+    @Test
+    public void errorResult() {
+        Verifier limited = new Verifier(Diagnostics.FAIL_FAST, false, Budget.UNLIMITED, STEPS);
+        VerificationResult result = limited.verify("int a = 1;\nint b = 2;\nint c = 3;\n");
+        assertEquals(VerificationResult.Verdict.ERROR, result.getVerdict());
+        assertFalse(result.isValid());
+        assertEquals("BudgetException", result.getKind());
+        assertEquals(0, result.getLine()); // the budget is not used up by a line of its own
+        assertEquals("Verification budget exceeded: more than " + STEPS + " steps", result.getMessage());
+
+        VerificationResult missing = verifier.verify(Paths.get("no", "such.sjava"));
+        assertEquals(VerificationResult.Verdict.ERROR, missing.getVerdict());
+        assertNull(missing.getKind());
+        assertEquals(Collections.emptyList(), missing.getDiagnostics());
+    }
+
+    @Test
+    public void sharedByThreads() throws Exception {
+        List<Path> files = RegressionCorpus.allFiles();
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(threads.submit(() -> show(verifier.verify(RegressionCorpus.read(file)))));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                assertEquals(RegressionCorpus.expected(files.get(i)), results.get(i).get(), files.get(i).toString());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * Shows a result the way the expected results are written.
+     *
+     * @param result the result.
+     * @return the code, and the message after a space if there is one.
+     */
+    private static String show(VerificationResult result) {
+        return RegressionCorpus.show(result.getVerdict().getCode(), result.getMessage());
+    }
+}
@@ -0,0 +1,114 @@
+package parsing;
+
+import oop.ex6.main.VerificationResult;
+import oop.ex6.main.Verifier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that verifying grows linearly with the length of the lines, on the lines backtracking patterns are
+ * slow on: long names, long runs of whitespace, long conditions, strings of escaped quotes and long calls.
+ */
+public class LinearTimeTest {
+    private static final int SMALL = 40_000;
+    private static final int GROWTH = 8;
+    private static final int RUNS = 7;
+    /** A linear verifier takes GROWTH times longer, a quadratic one GROWTH * GROWTH times. */
+    private static final double MAX_RATIO = 3 * GROWTH;
+
+    private final Verifier verifier = new Verifier();
+
+    @Test
+    public void validLongLines() {
+        assertLinear(LinearTimeTest::validSource, VerificationResult.Verdict.VALID);
+    }
+
+    @Test
+    public void invalidLongLines() {
+        assertLinear(size -> validSource(size) + invalidTail(size), VerificationResult.Verdict.INVALID);
+    }
+
+    @Test
+    public void unclosedLongLines() {
+        assertLinear(LinearTimeTest::unclosedSource, VerificationResult.Verdict.INVALID);
+    }
+
+    /**
+     * Verifies the sources of a small and a large size, and checks the larger one doesn't take much more than
+     * the growth of its size.
+     *
+     * @param source  the source of a size.
+     * @param verdict the expected verdict.
+     */
+    private void assertLinear(IntFunction<String> source, VerificationResult.Verdict verdict) {
+        String small = source.apply(SMALL);
+        String large = source.apply(SMALL * GROWTH);
+        assertEquals(verdict, verifier.verify(small).getVerdict());
+        assertEquals(verdict, verifier.verify(large).getVerdict());
+        long smallTime = bestTime(small);
+        long largeTime = bestTime(large);
+        double ratio = (double) largeTime / Math.max(smallTime, 1);
+        assertTrue(ratio < MAX_RATIO, "verifying " + GROWTH + " times longer lines took " + ratio + " times longer");
+    }
+
+    /**
+     * Gets the shortest time of a few verifications of a source, after a warmup.
+     *
+     * @param source the source code.
+     * @return the shortest time, in nanoseconds.
+     */
+    private long bestTime(String source) {
+        verifier.verify(source);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            verifier.verify(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static String validSource(int size) {
+        String name = "a" + "1".repeat(size);
+        String spaces = " ".repeat(size);
+        StringBuilder condition = new StringBuilder("c");
+        while (condition.length() < size) {
+            condition.append(" || c && ").append(name, 0, 10);
+        }
+        StringBuilder arguments = new StringBuilder("int p0");
+        for (int i = 1; arguments.length() < size; i++) {
+            arguments.append(" ,  double p").append(i);
+        }
+        return "int " + name + " = 1;\n"
+                + "String text = \"a" + spaces + "b\";\n"
+                + "String quotes = \"" + "\\\"".repeat(size / 2) + "\";\n"
+                + "boolean " + name.substring(0, 10) + " = true;\n"
+                + "void g(String s, boolean c) {\n"
+                + "    int x =" + spaces + name + ";\n"
+                + "    if (" + condition + ") {\n        x = 2;\n    }\n"
+                + "    return;\n}\n"
+                + "void f(" + arguments + ") {\n    return;\n}\n"
+                + "void h(boolean c) {\n"
+                + "    g(\"a" + spaces + "b\"" + spaces + ", c);\n"
+                + "    return;\n}\n";
+    }
+
+    private static String invalidTail(int size) {
+        String name = "a" + "1".repeat(size);
+        return "void k() {\n"
+                + "    " + name + " = \"a" + " ".repeat(size) + "b\";\n"
+                + "    return;\n}\n";
+    }
+
+    private static String unclosedSource(int size) {
+        return "void u(int a) {\n"
+                + "    if (" + "a || ".repeat(size / 5) + "a) {\n"
+                + "    int b = " + "(".repeat(size) + ";\n"
+                + "    return;\n}\n";
+    }
+}